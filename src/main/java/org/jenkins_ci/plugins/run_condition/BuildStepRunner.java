@@ -34,6 +34,10 @@ import hudson.model.Descriptor;
 import hudson.model.Hudson;
 import hudson.model.Result;
 import hudson.tasks.BuildStep;
+import org.jenkins_ci.plugins.run_condition.common.ConditionMetrics;
+import org.jenkins_ci.plugins.run_condition.common.ConditionTraceAction;
+import org.jenkins_ci.plugins.run_condition.common.EvaluationScope;
+import org.jenkins_ci.plugins.run_condition.common.ResultCache;
 import org.kohsuke.stapler.DataBoundConstructor;
 
 import java.io.IOException;
@@ -70,6 +74,48 @@ public abstract class BuildStepRunner implements Describable<BuildStepRunner> {
         return describable.getDescriptor().getDisplayName();
     }
 
+    private static boolean evaluate(final RunCondition condition, final AbstractBuild<?, ?> build, final BuildListener listener,
+                                    final EvaluationScope.Stage stage) throws Exception {
+        final EvaluationScope scope = EvaluationScope.open(build, stage);
+        try {
+            final boolean result = stage == EvaluationScope.Stage.PREBUILD ? condition.runPrebuild(build, listener)
+                                                                           : condition.runPerform(build, listener);
+            ResultCache.put(build, condition, stage, result);
+            return result;
+        } finally {
+            scope.close();
+        }
+    }
+
+    private boolean evaluateAndRecord(final RunCondition condition, final AbstractBuild<?, ?> build, final BuildListener listener,
+                                      final EvaluationScope.Stage stage) throws Exception {
+        final ConditionMetrics.Metrics conditionMetrics = ConditionMetrics.forCondition(condition.getClass());
+        final ConditionMetrics.Metrics runnerMetrics = ConditionMetrics.forRunner(getClass());
+        final ConditionTraceAction.Evaluation trace = ConditionTraceAction.start();
+        final Boolean cached = ResultCache.get(build, condition, stage);
+        if (cached != null) {
+            conditionMetrics.recordCacheHit();
+            runnerMetrics.recordCacheHit();
+            trace.finish(build, condition.getClass(), stage, "", cached, null);
+            return cached;
+        }
+        final long start = System.nanoTime();
+        try {
+            final boolean result = evaluate(condition, build, listener, stage);
+            final long nanos = System.nanoTime() - start;
+            conditionMetrics.recordResult(result, nanos);
+            runnerMetrics.recordResult(result, nanos);
+            trace.finish(build, condition.getClass(), stage, "", result, null);
+            return result;
+        } catch (final Exception e) {
+            final long nanos = System.nanoTime() - start;
+            conditionMetrics.recordException(nanos);
+            runnerMetrics.recordException(nanos);
+            trace.finish(build, condition.getClass(), stage, "", null, e);
+            throw e;
+        }
+    }
+
     public abstract boolean conditionalRun(final ConditionAndStep target, final AbstractBuild<?, ?> build, final BuildListener listener)
                                            throws IOException, InterruptedException;
 
@@ -78,7 +124,7 @@ public abstract class BuildStepRunner implements Describable<BuildStepRunner> {
         try {
             return conditionalRun(new ConditionAndStep() {
                 public boolean evaluate() throws Exception {
-                    return condition.runPrebuild(build, listener);
+                    return evaluateAndRecord(condition, build, listener, EvaluationScope.Stage.PREBUILD);
                 }
                 public boolean run() {
                     return buildStep.prebuild(build, listener);
@@ -106,7 +152,7 @@ public abstract class BuildStepRunner implements Describable<BuildStepRunner> {
                            final Launcher launcher, final BuildListener listener) throws InterruptedException, IOException {
         return conditionalRun(new ConditionAndStep() {
             public boolean evaluate() throws Exception {
-                return condition.runPerform(build, listener);
+                return evaluateAndRecord(condition, build, listener, EvaluationScope.Stage.PERFORM);
             }
             public boolean run() throws IOException, InterruptedException {
                 return buildStep.perform(build, launcher, listener);
@@ -32,6 +32,8 @@ import hudson.model.Describable;
 import hudson.model.Descriptor;
 import hudson.model.Hudson;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Define a condition that can be used to decide whether to run a BuildStep or not.
  * 
@@ -68,18 +70,75 @@ public abstract class RunCondition implements Describable<RunCondition>, Extensi
      */
     public abstract boolean runPerform(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception;
 
+    /**
+     * Whether runPrebuild and runPerform always return the same result for a build - e.g. because the condition only looks at
+     * the time that the build was scheduled. If so, the result of the prebuild evaluation is reused for the perform stage.
+     *
+     * @return true if the result only depends on things that do not change during the build
+     *
+     * @see org.jenkins_ci.plugins.run_condition.common.ResultCache
+     */
+    public boolean isBuildStable() {
+        return false;
+    }
+
     public RunConditionDescriptor getDescriptor() {
         return (RunConditionDescriptor)Hudson.getInstance().getDescriptor(getClass());
     }
 
     public static abstract class RunConditionDescriptor extends Descriptor<RunCondition> {
 
+        /** Typical cost of a condition that only looks at the build, or the clock */
+        public static final long COST_TRIVIAL = 1000L;
+        /** Typical cost of a condition that expands tokens */
+        public static final long COST_TOKENS = 100000L;
+        /** Typical cost of a condition that checks a file on the node */
+        public static final long COST_FILE = 1000000L;
+        /** Typical cost of a condition that has to search a directory tree on the node */
+        public static final long COST_FILE_SEARCH = 10000000L;
+        /** Typical cost of a condition that starts a process */
+        public static final long COST_PROCESS = 100000000L;
+
+        /** Weight of a new observation in the running average, as a power of 2 - i.e. 1/8 */
+        private static final int OBSERVATION_WEIGHT_SHIFT = 3;
+
+        private final transient AtomicLong observedCost = new AtomicLong(-1);
+
         protected RunConditionDescriptor() { }
 
         protected RunConditionDescriptor(Class<? extends RunCondition> clazz) {
             super(clazz);
         }
 
+        /**
+         * Rough cost, in nanoseconds, of evaluating one of these conditions, used before any evaluations have been observed.
+         * Only relative values matter - the COST_ constants give the scale.
+         */
+        public long getEstimatedCost() {
+            return COST_TOKENS;
+        }
+
+        /**
+         * Whether evaluating the condition can not change anything outside of the build, so that it is safe to skip it, or
+         * to evaluate it before other conditions.
+         */
+        public boolean isSideEffectFree() {
+            return true;
+        }
+
+        /**
+         * @return the running average cost in nanoseconds of the evaluations observed so far, or the estimated cost if none
+         */
+        public long getCost() {
+            final long observed = observedCost.get();
+            return observed < 0 ? getEstimatedCost() : observed;
+        }
+
+        public void recordEvaluation(final long nanos) {
+            final long sample = Math.max(0, nanos);
+            observedCost.updateAndGet(average -> average < 0 ? sample : average + ((sample - average) >> OBSERVATION_WEIGHT_SHIFT));
+        }
+
     }
 
 }
@@ -26,6 +26,11 @@ package org.jenkins_ci.plugins.run_condition;
 
 import hudson.DescriptorExtensionList;
 import hudson.Plugin;
+import hudson.util.HttpResponses;
+import jenkins.model.Jenkins;
+import org.jenkins_ci.plugins.run_condition.common.ConditionMetrics;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.verb.GET;
 
 public class RunConditionPlugin extends Plugin {
 
@@ -33,4 +38,15 @@ public class RunConditionPlugin extends Plugin {
         return RunCondition.all();
     }
 
+    /**
+     * Condition evaluation metrics as JSON, at /plugin/run-condition/metrics
+     *
+     * @see ConditionMetrics
+     */
+    @GET
+    public HttpResponse doMetrics() {
+        Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+        return HttpResponses.okJSON(ConditionMetrics.toJSON());
+    }
+
 }
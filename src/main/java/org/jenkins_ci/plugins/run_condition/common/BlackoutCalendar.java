@@ -0,0 +1,378 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import jenkins.util.SystemProperties;
+import org.jenkins_ci.plugins.run_condition.Messages;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Blackout windows read from an iCalendar (.ics) or CSV file.
+ * <p>
+ * The windows are sorted by start, with the latest end of each prefix alongside - a flattened interval tree. Finding the
+ * windows that could contain a time is a binary search, and a time after the latest end of every window that starts before it
+ * is in none of them.
+ * <p>
+ * Calendars are shared by every condition that reads the same file in the same time zone, and a file is only read again when
+ * its size or last modified time changes. Only the most recently used calendars are kept - 32 by default, or the number in
+ * the system property <code>org.jenkins_ci.plugins.run_condition.common.BlackoutCalendar.maxLoaded</code>.
+ */
+public final class BlackoutCalendar {
+
+    static final int MAX_LOADED = Math.max(1, SystemProperties.getInteger(BlackoutCalendar.class.getName() + ".maxLoaded", 32));
+    private static final LruMap LOADED = new LruMap(MAX_LOADED);
+    private static final DateTimeFormatter ICAL_DATE = DateTimeFormatter.ofPattern("yyyyMMdd", Locale.ROOT);
+    private static final DateTimeFormatter ICAL_DATE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss", Locale.ROOT);
+
+    private final FileTime lastModified;
+    private final long size;
+    private final Window[] windows;
+    private final long[] starts;
+    private final long[] maxEnds;
+
+    BlackoutCalendar(final List<Window> windows, final FileTime lastModified, final long size) {
+        this.lastModified = lastModified;
+        this.size = size;
+        this.windows = windows.toArray(new Window[0]);
+        Arrays.sort(this.windows, Comparator.comparingLong(Window::getStart));
+        starts = new long[this.windows.length];
+        maxEnds = new long[this.windows.length];
+        long maxEnd = Long.MIN_VALUE;
+        for (int i = 0; i < this.windows.length; i++) {
+            starts[i] = this.windows[i].start;
+            maxEnd = Math.max(maxEnd, this.windows[i].end);
+            maxEnds[i] = maxEnd;
+        }
+    }
+
+    /**
+     * @return the calendar in the file, with local times in the time zone of the Jenkins master
+     */
+    public static BlackoutCalendar get(final Path file) throws IOException {
+        return get(file, ZoneId.systemDefault());
+    }
+
+    /**
+     * @param zone the time zone of the local times in the file
+     * @return the calendar in the file, read again only if the file has changed since it was last read
+     */
+    public static BlackoutCalendar get(final Path file, final ZoneId zone) throws IOException {
+        final Path path = file.toAbsolutePath().normalize();
+        final Map.Entry<Path, ZoneId> key = new AbstractMap.SimpleImmutableEntry<>(path, zone);
+        final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        final BlackoutCalendar current;
+        synchronized (LOADED) {
+            current = LOADED.get(key);
+        }
+        if (current != null && current.size == attributes.size() && current.lastModified.equals(attributes.lastModifiedTime()))
+            return current;
+        final List<Window> windows;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            windows = parse(reader, isICalendar(path), zone);
+        }
+        final BlackoutCalendar loaded = new BlackoutCalendar(windows, attributes.lastModifiedTime(), attributes.size());
+        synchronized (LOADED) {
+            LOADED.put(key, loaded);
+        }
+        return loaded;
+    }
+
+    static int loadedCount() {
+        synchronized (LOADED) {
+            return LOADED.size();
+        }
+    }
+
+    public static boolean isCalendarFile(final Path file) {
+        return isICalendar(file) || file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv");
+    }
+
+    static boolean isICalendar(final Path file) {
+        final String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".ics") || name.endsWith(".ical");
+    }
+
+    public int size() {
+        return windows.length;
+    }
+
+    /**
+     * @return a window that contains the time, or null if it is in none of them
+     */
+    public Window find(final long epochMillis) {
+        int i = Arrays.binarySearch(starts, epochMillis);
+        if (i >= 0) {
+            // the last of the windows that start at this time
+            while (i + 1 < starts.length && starts[i + 1] == epochMillis) i++;
+        } else {
+            i = -i - 2;
+        }
+        for (; i >= 0 && maxEnds[i] > epochMillis; i--) {
+            if (windows[i].end > epochMillis) return windows[i];
+        }
+        return null;
+    }
+
+    static List<Window> parse(final Reader reader, final boolean iCalendar, final ZoneId zone) throws IOException {
+        final BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        return iCalendar ? parseICalendar(lines, zone) : parseCsv(lines, zone);
+    }
+
+    /**
+     * Each line is start,end[,summary]. A date on its own is the whole day, so 2024-12-23,2025-01-02 includes both of them.
+     */
+    private static List<Window> parseCsv(final BufferedReader reader, final ZoneId zone) throws IOException {
+        final List<Window> windows = new ArrayList<>();
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            final String[] fields = line.split(",", 3);
+            if (fields.length < 2) throw new IOException(Messages.blackoutCalendar_invalidLine(lineNumber));
+            try {
+                final long start = parseCsvTime(fields[0].trim(), zone, false);
+                final long end = parseCsvTime(fields[1].trim(), zone, true);
+                windows.add(window(start, end, fields.length > 2 ? fields[2].trim() : "", lineNumber));
+            } catch (DateTimeException e) {
+                // not the line, nor the cause, which quotes it - the file may not be one that the user can read
+                throw new IOException(Messages.blackoutCalendar_invalidLine(lineNumber));
+            }
+        }
+        return windows;
+    }
+
+    private static long parseCsvTime(final String value, final ZoneId zone, final boolean end) {
+        if (value.isEmpty()) throw new DateTimeException("No time");
+        if (value.length() == 10) {
+            final LocalDate date = LocalDate.parse(value);
+            return (end ? date.plusDays(1) : date).atStartOfDay(zone).toInstant().toEpochMilli();
+        }
+        final String time = value.replace(' ', 'T');
+        final char last = time.charAt(time.length() - 1);
+        if (last == 'Z' || time.lastIndexOf('+') > 0 || time.lastIndexOf('-') > time.indexOf('T'))
+            return OffsetDateTime.parse(time).toInstant().toEpochMilli();
+        return LocalDateTime.parse(time).atZone(zone).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Reads the DTSTART, DTEND or DURATION and SUMMARY of each VEVENT. Recurring events are rejected rather than silently
+     * read as their first occurrence.
+     */
+    private static List<Window> parseICalendar(final BufferedReader reader, final ZoneId zone) throws IOException {
+        final List<Window> windows = new ArrayList<>();
+        final List<String> unfolded = new ArrayList<>();
+        final List<Integer> lineNumbers = new ArrayList<>();
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (!unfolded.isEmpty() && (line.startsWith(" ") || line.startsWith("\t"))) {
+                final int last = unfolded.size() - 1;
+                unfolded.set(last, unfolded.get(last) + line.substring(1));
+            } else if (!line.isEmpty()) {
+                unfolded.add(line);
+                lineNumbers.add(lineNumber);
+            }
+        }
+        Event event = null;
+        for (int i = 0; i < unfolded.size(); i++) {
+            final String property = unfolded.get(i);
+            final int number = lineNumbers.get(i);
+            if (property.equalsIgnoreCase("BEGIN:VEVENT")) {
+                event = new Event(number);
+            } else if (property.equalsIgnoreCase("END:VEVENT") && event != null) {
+                windows.add(event.toWindow(zone));
+                event = null;
+            } else if (event != null) {
+                try {
+                    event.set(property, zone);
+                } catch (DateTimeException | IllegalArgumentException e) {
+                    throw new IOException(Messages.blackoutCalendar_invalidLine(number));
+                }
+            }
+        }
+        return windows;
+    }
+
+    private static Window window(final long start, final long end, final String summary, final int lineNumber) throws IOException {
+        if (end < start) throw new IOException(Messages.blackoutCalendar_endBeforeStart(lineNumber));
+        return new Window(start, end, summary);
+    }
+
+    private static final class Event {
+
+        private final int lineNumber;
+        private Long start;
+        private boolean allDay;
+        private Long end;
+        private Duration duration;
+        private String summary = "";
+
+        Event(final int lineNumber) {
+            this.lineNumber = lineNumber;
+        }
+
+        void set(final String property, final ZoneId defaultZone) throws IOException {
+            int colon = -1;
+            boolean quoted = false;
+            for (int i = 0; i < property.length() && colon < 0; i++) {
+                final char c = property.charAt(i);
+                if (c == '"') quoted = !quoted;
+                else if (c == ':' && !quoted) colon = i;
+            }
+            if (colon < 0) return;
+            final String[] nameAndParams = property.substring(0, colon).split(";");
+            final String name = nameAndParams[0].toUpperCase(Locale.ROOT);
+            final String value = property.substring(colon + 1).trim();
+            ZoneId zone = defaultZone;
+            boolean date = value.length() == 8;
+            for (int i = 1; i < nameAndParams.length; i++) {
+                final String param = nameAndParams[i];
+                if (param.regionMatches(true, 0, "TZID=", 0, 5)) zone = ZoneId.of(param.substring(5).replace("\"", ""));
+                else if (param.equalsIgnoreCase("VALUE=DATE")) date = true;
+            }
+            switch (name) {
+                case "DTSTART":
+                    start = parseTime(value, zone, date);
+                    allDay = date;
+                    break;
+                case "DTEND":
+                    end = parseTime(value, zone, date);
+                    break;
+                case "DURATION":
+                    duration = parseDuration(value);
+                    break;
+                case "SUMMARY":
+                    summary = value.replace("\\n", " ").replace("\\N", " ").replace("\\,", ",").replace("\\;", ";")
+                                   .replace("\\\\", "\\");
+                    break;
+                case "RRULE":
+                case "RDATE":
+                    throw new IOException(Messages.blackoutCalendar_recurring(lineNumber));
+                default:
+                    break;
+            }
+        }
+
+        Window toWindow(final ZoneId zone) throws IOException {
+            if (start == null) throw new IOException(Messages.blackoutCalendar_noStart(lineNumber));
+            final long until;
+            if (end != null) until = end;
+            else if (duration != null) until = start + duration.toMillis();
+            else if (allDay) until = start + Duration.ofDays(1).toMillis();
+            else until = start;
+            return window(start, until, summary, lineNumber);
+        }
+
+        private static long parseTime(final String value, final ZoneId zone, final boolean date) {
+            if (date) return LocalDate.parse(value, ICAL_DATE).atStartOfDay(zone).toInstant().toEpochMilli();
+            if (value.endsWith("Z") || value.endsWith("z"))
+                return LocalDateTime.parse(value.substring(0, value.length() - 1), ICAL_DATE_TIME).atZone(ZoneId.of("UTC")).toInstant()
+                                    .toEpochMilli();
+            return LocalDateTime.parse(value, ICAL_DATE_TIME).atZone(zone).toInstant().toEpochMilli();
+        }
+
+        private static Duration parseDuration(final String value) {
+            final int weeks = value.indexOf('W');
+            if (weeks < 0) return Duration.parse(value);
+            final boolean negative = value.startsWith("-");
+            final int days = Integer.parseInt(value.substring(value.indexOf('P') + 1, weeks)) * 7;
+            return Duration.ofDays(negative ? -days : days);
+        }
+
+    }
+
+    /**
+     * A blackout window, from the start up to but not including the end.
+     */
+    public static final class Window {
+
+        private final long start;
+        private final long end;
+        private final String summary;
+
+        Window(final long start, final long end, final String summary) {
+            this.start = start;
+            this.end = end;
+            this.summary = summary;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        public String getSummary() {
+            return summary;
+        }
+
+    }
+
+    private static final class LruMap extends LinkedHashMap<Map.Entry<Path, ZoneId>, BlackoutCalendar> {
+
+        private static final long serialVersionUID = 1L;
+        private final int maxSize;
+
+        LruMap(final int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Map.Entry<Path, ZoneId>, BlackoutCalendar> eldest) {
+            return size() > maxSize;
+        }
+
+    }
+
+}
@@ -0,0 +1,224 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts and times of the condition evaluations since Jenkins started, per type of condition and per BuildStepRunner.
+ *
+ * Recording does not take any locks. Times go into a histogram with one bucket per power of 2 nanoseconds, so percentiles are
+ * only accurate to a factor of 2 - plenty to see which conditions are slow. In the JSON, each bucket is keyed by the
+ * (exclusive) upper bound of its times.
+ *
+ * A result reused from the {@link ResultCache} is not an evaluation: it is only counted as a cache hit, and takes no time.
+ */
+public final class ConditionMetrics {
+
+    private static final ConcurrentMap<String, Metrics> CONDITIONS = new ConcurrentHashMap<String, Metrics>();
+    private static final ConcurrentMap<String, Metrics> RUNNERS = new ConcurrentHashMap<String, Metrics>();
+
+    private ConditionMetrics() {}
+
+    public static Metrics forCondition(final Class<?> conditionType) {
+        return CONDITIONS.computeIfAbsent(conditionType.getName(), Metrics::new);
+    }
+
+    public static Metrics forRunner(final Class<?> runnerType) {
+        return RUNNERS.computeIfAbsent(runnerType.getName(), Metrics::new);
+    }
+
+    public static List<Metrics> getConditions() {
+        return sorted(CONDITIONS);
+    }
+
+    public static List<Metrics> getRunners() {
+        return sorted(RUNNERS);
+    }
+
+    public static void reset() {
+        CONDITIONS.clear();
+        RUNNERS.clear();
+    }
+
+    public static JSONObject toJSON() {
+        final JSONObject json = new JSONObject();
+        json.put("conditions", toJSON(getConditions()));
+        json.put("runners", toJSON(getRunners()));
+        return json;
+    }
+
+    private static JSONArray toJSON(final List<Metrics> all) {
+        final JSONArray json = new JSONArray();
+        for (Metrics metrics : all)
+            json.add(metrics.toJSON());
+        return json;
+    }
+
+    private static List<Metrics> sorted(final Map<String, Metrics> metrics) {
+        return Collections.unmodifiableList(new ArrayList<Metrics>(new TreeMap<String, Metrics>(metrics).values()));
+    }
+
+    public static final class Metrics {
+
+        /** Bucket i counts the times of at least 2^(i-1) and less than 2^i nanoseconds */
+        private static final int BUCKETS = 64;
+
+        private final String name;
+        private final LongAdder trueCount = new LongAdder();
+        private final LongAdder falseCount = new LongAdder();
+        private final LongAdder exceptionCount = new LongAdder();
+        private final LongAdder cacheHitCount = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        Metrics(final String name) {
+            this.name = name;
+        }
+
+        public void recordResult(final boolean result, final long nanos) {
+            (result ? trueCount : falseCount).increment();
+            recordTime(nanos);
+        }
+
+        public void recordException(final long nanos) {
+            exceptionCount.increment();
+            recordTime(nanos);
+        }
+
+        public void recordCacheHit() {
+            cacheHitCount.increment();
+        }
+
+        private void recordTime(final long nanos) {
+            final long time = Math.max(0, nanos);
+            totalNanos.add(time);
+            maxNanos.accumulate(time);
+            histogram.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(time)));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getTrueCount() {
+            return trueCount.sum();
+        }
+
+        public long getFalseCount() {
+            return falseCount.sum();
+        }
+
+        public long getExceptionCount() {
+            return exceptionCount.sum();
+        }
+
+        public long getCacheHitCount() {
+            return cacheHitCount.sum();
+        }
+
+        /**
+         * @return the number of evaluations, not counting the cache hits
+         */
+        public long getCount() {
+            return getTrueCount() + getFalseCount() + getExceptionCount();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMeanNanos() {
+            final long count = getCount();
+            return count == 0 ? 0 : getTotalNanos() / count;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return the upper bound of the bucket that holds the percentile, or 0 if nothing has been recorded
+         */
+        public long getPercentileNanos(final double percentile) {
+            final long[] counts = getHistogram();
+            long total = 0;
+            for (long count : counts)
+                total += count;
+            if (total == 0) return 0;
+            final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(getMaxNanos(), (1L << i) - 1);
+            }
+            return getMaxNanos();
+        }
+
+        long[] getHistogram() {
+            final long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++)
+                counts[i] = histogram.get(i);
+            return counts;
+        }
+
+        JSONObject toJSON() {
+            final JSONObject json = new JSONObject();
+            json.put("name", name);
+            json.put("true", getTrueCount());
+            json.put("false", getFalseCount());
+            json.put("exceptions", getExceptionCount());
+            json.put("cacheHits", getCacheHitCount());
+            json.put("totalNanos", getTotalNanos());
+            json.put("meanNanos", getMeanNanos());
+            json.put("maxNanos", getMaxNanos());
+            json.put("p50Nanos", getPercentileNanos(50));
+            json.put("p90Nanos", getPercentileNanos(90));
+            json.put("p99Nanos", getPercentileNanos(99));
+            final JSONObject buckets = new JSONObject();
+            final long[] counts = getHistogram();
+            for (int i = 0; i < counts.length; i++)
+                if (counts[i] > 0) buckets.put(String.valueOf(1L << i), counts[i]);
+            json.put("histogram", buckets);
+            return json;
+        }
+
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import hudson.model.AbstractBuild;
+import hudson.model.InvisibleAction;
+import hudson.model.Item;
+import hudson.model.Run;
+import hudson.util.HttpResponses;
+import jenkins.model.Jenkins;
+import jenkins.model.RunAction2;
+import jenkins.util.SystemProperties;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.kohsuke.stapler.HttpResponse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Structured record of every condition evaluated during a build, saved with the build and available as a JSON array at
+ * <code>conditionTrace/</code> under the build URL - to users who can see the configuration of the job (Item/ExtendedRead),
+ * as the records show the configured inputs.
+ *
+ * Each record is a compact JSON object:
+ * <ul>
+ *     <li><code>t</code> - the condition type (class name)</li>
+ *     <li><code>s</code> - the stage, PREBUILD or PERFORM</li>
+ *     <li><code>p</code> - the path of the condition in the tree of And/Or/Not conditions, as child indexes separated by
+ *     <code>/</code> - empty for the condition given to the BuildStepRunner</li>
+ *     <li><code>i</code> - the inputs before token expansion, if the condition expands any - expanded values can hold secrets,
+ *     so they are never recorded</li>
+ *     <li><code>r</code> - the result, missing if the condition threw an exception</li>
+ *     <li><code>e</code> - the exception type, if the condition threw an exception</li>
+ *     <li><code>n</code> - how long the evaluation took, in nanoseconds</li>
+ * </ul>
+ *
+ * Only the last 500 records are kept for each build, which can be changed with the system property
+ * <code>org.jenkins_ci.plugins.run_condition.common.ConditionTraceAction.maxRecords</code>.
+ * Recording can be switched off with the system property
+ * <code>org.jenkins_ci.plugins.run_condition.common.ConditionTraceAction.disabled=true</code>.
+ */
+public class ConditionTraceAction extends InvisibleAction implements RunAction2 {
+
+    private static final boolean DISABLED = SystemProperties.getBoolean(ConditionTraceAction.class.getName() + ".disabled");
+
+    private static final int MAX_RECORDS = SystemProperties.getInteger(ConditionTraceAction.class.getName() + ".maxRecords", 500);
+
+    /** Only the start of each input is recorded */
+    private static final int MAX_INPUT_LENGTH = 256;
+
+    private static final ThreadLocal<List<String>> INPUTS = new ThreadLocal<List<String>>();
+
+    /**
+     * Start timing an evaluation, and collecting the inputs that it expands on this thread.
+     */
+    public static Evaluation start() {
+        return new Evaluation();
+    }
+
+    /**
+     * Record an input of the condition that is being evaluated on this thread, if any.
+     *
+     * @param template the input as configured, before token expansion
+     */
+    public static void recordInput(final String template) {
+        final List<String> inputs = INPUTS.get();
+        if (inputs != null)
+            inputs.add(template == null || template.length() <= MAX_INPUT_LENGTH ? template : template.substring(0, MAX_INPUT_LENGTH));
+    }
+
+    private final List<String> records = new ArrayList<String>();
+    private transient Run<?, ?> run;
+
+    public List<String> getRecords() {
+        synchronized (records) {
+            return Collections.unmodifiableList(new ArrayList<String>(records));
+        }
+    }
+
+    @Override
+    public String getUrlName() {
+        return "conditionTrace";
+    }
+
+    @Override
+    public void onAttached(final Run<?, ?> run) {
+        this.run = run;
+    }
+
+    @Override
+    public void onLoad(final Run<?, ?> run) {
+        this.run = run;
+    }
+
+    public HttpResponse doIndex() {
+        if (run == null) Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+        else run.getParent().checkPermission(Item.EXTENDED_READ);
+        final JSONArray json = new JSONArray();
+        for (String record : getRecords())
+            json.add(JSONObject.fromObject(record));
+        return HttpResponses.okJSON(json);
+    }
+
+    private void add(final String record) {
+        add(record, MAX_RECORDS);
+    }
+
+    /**
+     * Add the record, dropping the oldest ones to keep no more than the maximum.
+     */
+    void add(final String record, final int maxRecords) {
+        synchronized (records) {
+            while (!records.isEmpty() && records.size() >= maxRecords)
+                records.remove(0);
+            if (maxRecords > 0) records.add(record);
+        }
+    }
+
+    private static ConditionTraceAction getOrCreate(final AbstractBuild<?, ?> build) {
+        synchronized (ConditionTraceAction.class) {
+            ConditionTraceAction action = build.getAction(ConditionTraceAction.class);
+            if (action == null) {
+                action = new ConditionTraceAction();
+                build.addAction(action);
+            }
+            return action;
+        }
+    }
+
+    public static final class Evaluation {
+
+        private final long start = System.nanoTime();
+        private final List<String> outerInputs = INPUTS.get();
+        private final List<String> inputs = new ArrayList<String>();
+
+        private Evaluation() {
+            INPUTS.set(inputs);
+        }
+
+        /**
+         * Add the record to the build, and go back to collecting the inputs for the outer evaluation, if any.
+         *
+         * @param result the result, or null if the condition threw an exception
+         * @param failure the exception thrown by the condition, or null
+         */
+        public void finish(final AbstractBuild<?, ?> build, final Class<?> conditionType, final EvaluationScope.Stage stage,
+                           final String path, final Boolean result, final Throwable failure) {
+            final long nanos = System.nanoTime() - start;
+            if (outerInputs == null) INPUTS.remove();
+            else INPUTS.set(outerInputs);
+            if (DISABLED || build == null) return;
+            final JSONObject record = new JSONObject();
+            record.put("t", conditionType.getName());
+            record.put("s", stage.name());
+            record.put("p", path);
+            if (!inputs.isEmpty()) record.put("i", JSONArray.fromObject(inputs));
+            if (result != null) record.put("r", result);
+            if (failure != null) record.put("e", failure.getClass().getName());
+            record.put("n", nanos);
+            getOrCreate(build).add(record.toString());
+        }
+
+    }
+
+}
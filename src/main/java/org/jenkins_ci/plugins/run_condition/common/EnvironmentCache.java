@@ -0,0 +1,87 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import hudson.EnvVars;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.EnvironmentContributingAction;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot of the build environment, shared by all of the conditions evaluated to decide whether to run one build step.
+ *
+ * Working out the environment visits every EnvironmentContributor, and may need to talk to the node. The snapshot belongs to
+ * the {@link EvaluationScope}, so it is never reused by a later step - or a later stage - where an earlier step may have
+ * changed the environment, even through an action that changes in place. Within the scope it is also dropped if the build
+ * variables change, or an action that contributes to the environment is added to (or removed from) the build. Conditions
+ * evaluated without a BuildStepRunner, so with no EvaluationScope, always get a freshly computed environment.
+ */
+public final class EnvironmentCache {
+
+    private EnvironmentCache() {}
+
+    /**
+     * @return the build environment - a copy that the caller is free to change
+     */
+    public static EnvVars getEnvironment(final AbstractBuild<?, ?> build, final BuildListener listener)
+                                                                                                throws IOException, InterruptedException {
+        final EvaluationScope scope = EvaluationScope.get(build);
+        if (scope == null) return build.getEnvironment(listener);
+        final Map<String, String> variables = build.getBuildVariables();
+        final List<EnvironmentContributingAction> actions =
+                                    new ArrayList<EnvironmentContributingAction>(build.getActions(EnvironmentContributingAction.class));
+        final Snapshot snapshot = scope.getEnvironment();
+        if (snapshot != null && snapshot.isValidFor(variables, actions))
+            return new EnvVars(snapshot.environment);
+        final EnvVars environment = build.getEnvironment(listener);
+        scope.setEnvironment(new Snapshot(variables, actions, new EnvVars(environment)));
+        return environment;
+    }
+
+    static final class Snapshot {
+
+        private final Map<String, String> variables;
+        private final List<EnvironmentContributingAction> actions;
+        private final EnvVars environment;
+
+        Snapshot(final Map<String, String> variables, final List<EnvironmentContributingAction> actions, final EnvVars environment) {
+            this.variables = variables;
+            this.actions = actions;
+            this.environment = environment;
+        }
+
+        boolean isValidFor(final Map<String, String> currentVariables, final List<EnvironmentContributingAction> currentActions) {
+            return variables.equals(currentVariables) && actions.equals(currentActions);
+        }
+
+    }
+
+}
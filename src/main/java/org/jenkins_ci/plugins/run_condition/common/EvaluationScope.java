@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import hudson.FilePath;
+import hudson.model.AbstractBuild;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * State shared by all of the conditions that are evaluated to decide whether to run one build step, in one stage (prebuild or
+ * perform) of a build.
+ *
+ * The BuildStepRunner opens a scope around the evaluation of the condition, so that all of the conditions in an And/Or tree can
+ * share work - e.g. expanding the same token only once. Conditions that are evaluated without a BuildStepRunner have no scope,
+ * and do all of the work every time.
+ */
+public final class EvaluationScope {
+
+    public enum Stage { PREBUILD, PERFORM }
+
+    private static final Map<AbstractBuild<?, ?>, EvaluationScope> SCOPES = new WeakHashMap<AbstractBuild<?, ?>, EvaluationScope>();
+
+    /**
+     * Open a scope for the build, or join the scope that is already open for it.
+     * Every call must be matched by a call to {@link #close()}.
+     */
+    public static EvaluationScope open(final AbstractBuild<?, ?> build, final Stage stage) {
+        synchronized (SCOPES) {
+            EvaluationScope scope = SCOPES.get(build);
+            if (scope == null) {
+                scope = new EvaluationScope(build, stage);
+                SCOPES.put(build, scope);
+            }
+            scope.depth++;
+            return scope;
+        }
+    }
+
+    /**
+     * @return the scope currently open for the build, or null if the conditions are not being evaluated by a BuildStepRunner
+     */
+    public static EvaluationScope get(final AbstractBuild<?, ?> build) {
+        if (build == null) return null;
+        synchronized (SCOPES) {
+            return SCOPES.get(build);
+        }
+    }
+
+    private final WeakReference<AbstractBuild<?, ?>> build;
+    private final Stage stage;
+    private final Map<String, String> expansions = new ConcurrentHashMap<String, String>();
+    private final Map<FilePath, Boolean> existence = new ConcurrentHashMap<FilePath, Boolean>();
+    private volatile EnvironmentCache.Snapshot environment;
+    private int depth;
+
+    private EvaluationScope(final AbstractBuild<?, ?> build, final Stage stage) {
+        this.build = new WeakReference<AbstractBuild<?, ?>>(build);
+        this.stage = stage;
+    }
+
+    public Stage getStage() {
+        return stage;
+    }
+
+    public void close() {
+        synchronized (SCOPES) {
+            if (--depth > 0) return;
+            final AbstractBuild<?, ?> owner = build.get();
+            if (owner != null && SCOPES.get(owner) == this)
+                SCOPES.remove(owner);
+        }
+    }
+
+    String getExpansion(final String template) {
+        return expansions.get(template);
+    }
+
+    void putExpansion(final String template, final String expanded) {
+        expansions.put(template, expanded);
+    }
+
+    EnvironmentCache.Snapshot getEnvironment() {
+        return environment;
+    }
+
+    void setEnvironment(final EnvironmentCache.Snapshot environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * @return whether the file existed when it was checked by {@link ExistenceCheck} in this scope, or null if it was not
+     */
+    public Boolean getExistence(final FilePath file) {
+        return existence.get(file);
+    }
+
+    void putExistence(final FilePath file, final boolean exists) {
+        existence.put(file, exists);
+    }
+
+    /**
+     * Forget the files checked so far - e.g. after evaluating a condition that may have created or deleted some of them.
+     */
+    public void clearExistence() {
+        existence.clear();
+    }
+
+}
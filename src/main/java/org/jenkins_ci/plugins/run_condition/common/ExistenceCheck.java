@@ -0,0 +1,85 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Check whether several files exist with one call to the node, and remember the answers for the rest of the
+ * {@link EvaluationScope}.
+ */
+public final class ExistenceCheck extends MasterToSlaveFileCallable<boolean[]> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Check all of the files that have not already been checked in the scope. Files on different nodes are checked with one
+     * call per node.
+     */
+    public static void checkAll(final EvaluationScope scope, final List<FilePath> files) throws IOException, InterruptedException {
+        final Map<Object, List<FilePath>> byChannel = new LinkedHashMap<Object, List<FilePath>>();
+        for (FilePath file : files) {
+            if (scope.getExistence(file) != null) continue;
+            // the controller has no channel
+            final Object channel = file.getChannel() == null ? ExistenceCheck.class : file.getChannel();
+            byChannel.computeIfAbsent(channel, c -> new ArrayList<FilePath>()).add(file);
+        }
+        for (List<FilePath> sameNode : byChannel.values()) {
+            final String[] remotes = new String[sameNode.size()];
+            for (int i = 0; i < remotes.length; i++)
+                remotes[i] = sameNode.get(i).getRemote();
+            final boolean[] exists = sameNode.get(0).act(new ExistenceCheck(remotes));
+            for (int i = 0; i < exists.length; i++)
+                scope.putExistence(sameNode.get(i), exists[i]);
+        }
+    }
+
+    private final String[] remotes;
+
+    private ExistenceCheck(final String[] remotes) {
+        this.remotes = remotes;
+    }
+
+    /**
+     * @param ignored the first of the files - all of them are checked
+     */
+    @Override
+    public boolean[] invoke(final File ignored, final VirtualChannel channel) {
+        final boolean[] exists = new boolean[remotes.length];
+        for (int i = 0; i < remotes.length; i++)
+            exists[i] = new File(remotes[i]).exists();
+        return exists;
+    }
+
+}
@@ -0,0 +1,246 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import org.jenkins_ci.plugins.run_condition.Messages;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Search a file for a literal string or a regular expression, on the node that has the file.
+ *
+ * A literal is searched for as UTF-8 bytes, read window by window into one reused buffer, so the file is never decoded or held
+ * in memory - or mapped, which would keep it locked on Windows until the mapping is garbage collected. A regular expression is
+ * matched against each line in turn, as the file is read, so it can not match across lines. Lines longer than
+ * {@link #MAX_LINE} characters - e.g. in minified or binary files - are matched in pieces of that length, so that memory use is
+ * bounded. Either way only the first {@code maxBytes} of the file are searched, and the search stops at the first match.
+ *
+ * The file must be under the base directory that the search is run on, once any links have been followed - otherwise a
+ * condition could be used to read any file that the node can, one pattern at a time.
+ */
+public final class FileContentSearch extends MasterToSlaveFileCallable<FileContentSearch.Result> {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Bytes of the file that are read at once */
+    static final int WINDOW = 1024 * 1024;
+
+    /** Characters of a line that are matched at once */
+    static final int MAX_LINE = 64 * 1024;
+
+    public enum Result { FOUND, NOT_FOUND, MISSING }
+
+    private final String path;
+    private final String pattern;
+    private final boolean regex;
+    private final long maxBytes;
+    private final int window;
+
+    /**
+     * @param path the file, relative to the base directory
+     * @param pattern the literal string, or regular expression, to search for
+     * @param regex true if the pattern is a regular expression
+     * @param maxBytes only search this many bytes from the start of the file, or 0 to search all of it
+     */
+    public FileContentSearch(final String path, final String pattern, final boolean regex, final long maxBytes) {
+        this(path, pattern, regex, maxBytes, WINDOW);
+    }
+
+    FileContentSearch(final String path, final String pattern, final boolean regex, final long maxBytes, final int window) {
+        this.path = path;
+        this.pattern = pattern;
+        this.regex = regex;
+        this.maxBytes = maxBytes;
+        this.window = window;
+    }
+
+    /**
+     * @param base the base directory
+     */
+    @Override
+    public Result invoke(final File base, final VirtualChannel channel) throws IOException {
+        final File file = resolve(base, path);
+        if (!file.isFile()) return Result.MISSING;
+        final boolean found = regex ? matchLines(file) : containsBytes(file);
+        return found ? Result.FOUND : Result.NOT_FOUND;
+    }
+
+    /**
+     * @return the file, once any links have been followed
+     * @throws IOException if the file is not under the base directory
+     */
+    static File resolve(final File base, final String path) throws IOException {
+        final Path root = toRealPath(base.toPath().toAbsolutePath().normalize());
+        final Path resolved = toRealPath(root.resolve(path).normalize());
+        if (!resolved.startsWith(root)) throw new IOException(Messages.fileContainsCondition_outsideBase(path));
+        return resolved.toFile();
+    }
+
+    private static Path toRealPath(final Path path) throws IOException {
+        return Files.exists(path) ? path.toRealPath() : path;
+    }
+
+    private boolean containsBytes(final File file) throws IOException {
+        final byte[] bytes = pattern.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length == 0) return true;
+        final int[] shifts = shifts(bytes);
+        // consecutive windows overlap by one byte less than the pattern, so that a match can not be split between them
+        final int overlap = bytes.length - 1;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(window, 2 * bytes.length));
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long remaining = maxBytes > 0 ? Math.min(channel.size(), maxBytes) : channel.size();
+            while (true) {
+                buffer.limit((int) Math.min(buffer.capacity(), buffer.position() + remaining));
+                boolean end = false;
+                while (buffer.hasRemaining()) {
+                    final int read = channel.read(buffer);
+                    if (read < 0) {
+                        end = true;
+                        break;
+                    }
+                    remaining -= read;
+                }
+                final int length = buffer.position();
+                if (indexOf(buffer, length, bytes, shifts) >= 0) return true;
+                if (end || remaining <= 0 || length <= overlap) return false;
+                buffer.limit(length);
+                buffer.position(length - overlap);
+                buffer.compact();
+            }
+        }
+    }
+
+    /**
+     * Boyer-Moore-Horspool bad character shifts.
+     */
+    static int[] shifts(final byte[] bytes) {
+        final int[] shifts = new int[256];
+        Arrays.fill(shifts, bytes.length);
+        for (int i = 0; i < bytes.length - 1; i++)
+            shifts[bytes[i] & 0xff] = bytes.length - 1 - i;
+        return shifts;
+    }
+
+    static int indexOf(final ByteBuffer buffer, final int length, final byte[] bytes, final int[] shifts) {
+        final int last = bytes.length - 1;
+        int start = 0;
+        while (start + last < length) {
+            int i = last;
+            while (i >= 0 && buffer.get(start + i) == bytes[i]) i--;
+            if (i < 0) return start;
+            start += shifts[buffer.get(start + last) & 0xff];
+        }
+        return -1;
+    }
+
+    private boolean matchLines(final File file) throws IOException {
+        final Matcher matcher = Pattern.compile(pattern).matcher("");
+        final char[] line = new char[Math.min(window, MAX_LINE)];
+        final CharBuffer text = CharBuffer.wrap(line);
+        final char[] chars = new char[8192];
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        InputStream in = Channels.newInputStream(channel);
+        if (maxBytes > 0) in = new Limited(in, maxBytes);
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            int length = 0;
+            boolean afterReturn = false;
+            int read;
+            while ((read = reader.read(chars)) >= 0) {
+                for (int i = 0; i < read; i++) {
+                    final char c = chars[i];
+                    // \r\n ends one line, as for BufferedReader.readLine
+                    if (c == '\n' && afterReturn) {
+                        afterReturn = false;
+                        continue;
+                    }
+                    afterReturn = c == '\r';
+                    if (c == '\n' || c == '\r') {
+                        if (find(matcher, text, length)) return true;
+                        length = 0;
+                        continue;
+                    }
+                    if (length == line.length) {
+                        if (find(matcher, text, length)) return true;
+                        length = 0;
+                    }
+                    line[length++] = c;
+                }
+            }
+            return length > 0 && find(matcher, text, length);
+        }
+    }
+
+    private static boolean find(final Matcher matcher, final CharBuffer text, final int length) {
+        text.clear();
+        text.limit(length);
+        return matcher.reset(text).find();
+    }
+
+    private static final class Limited extends FilterInputStream {
+
+        private long remaining;
+
+        Limited(final InputStream in, final long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            final int read = super.read();
+            if (read >= 0) remaining--;
+            return read;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (remaining <= 0) return -1;
+            final int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) remaining -= read;
+            return read;
+        }
+
+    }
+
+}
@@ -0,0 +1,297 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.AbstractBuild;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Every file and directory under a base directory, listed once on the node and then kept on the controller, so that file
+ * conditions can be answered without going back to the node.
+ *
+ * There is one index per build and base directory. The first time that it is used in an {@link EvaluationScope} (so once per
+ * build step), the modification time of the base directory is checked, and the index is built again if it has changed. That
+ * only notices files that are added to or removed from the base directory itself - a step that only changes files deeper
+ * down will not be seen - which is why the index has to be switched on for each condition.
+ *
+ * The paths are kept in a sorted array, using / as the separator, and looked up with a binary search. If the file system of
+ * the node is case insensitive (as it usually is on Windows and macOS), lookups are too - by comparing the lower case paths,
+ * which does not fold every character the same way as the file system, but does for the letters that paths normally use.
+ *
+ * The indexes of a build are dropped when it completes.
+ */
+public final class FileIndex {
+
+    private static final Map<AbstractBuild<?, ?>, Map<String, FileIndex>> INDEXES = new WeakHashMap<AbstractBuild<?, ?>, Map<String, FileIndex>>();
+
+    private static final Pattern NOT_INDEXED = Pattern.compile("^([/\\\\]|[A-Za-z]:)|(^|[/\\\\])\\.{1,2}([/\\\\]|$)");
+
+    /**
+     * @return the index of the directory, up to date as far as the modification time of the directory can tell
+     */
+    public static FileIndex get(final AbstractBuild<?, ?> build, final FilePath directory) throws IOException, InterruptedException {
+        final EvaluationScope scope = EvaluationScope.get(build);
+        final String key = directory.getRemote();
+        FileIndex index;
+        synchronized (INDEXES) {
+            final Map<String, FileIndex> indexes = INDEXES.get(build);
+            index = indexes == null ? null : indexes.get(key);
+        }
+        if (index != null && scope != null && index.checkedIn == scope) return index;
+        if (index == null || directory.lastModified() != index.snapshot.modified) {
+            index = new FileIndex(directory.act(new Lister()));
+            synchronized (INDEXES) {
+                Map<String, FileIndex> indexes = INDEXES.get(build);
+                if (indexes == null) {
+                    indexes = new HashMap<String, FileIndex>();
+                    INDEXES.put(build, indexes);
+                }
+                indexes.put(key, index);
+            }
+        }
+        index.checkedIn = scope;
+        return index;
+    }
+
+    /**
+     * Drop the indexes of the build.
+     */
+    public static void remove(final Run<?, ?> build) {
+        synchronized (INDEXES) {
+            INDEXES.remove(build);
+        }
+    }
+
+    /**
+     * @return false if the path can not be looked up in an index - absolute paths, and paths that contain . or ..
+     */
+    public static boolean isIndexable(final String path) {
+        return path != null && !NOT_INDEXED.matcher(path).find();
+    }
+
+    private final Snapshot snapshot;
+    /** The paths in lower case, sorted, if the file system is case insensitive */
+    private final String[] folded;
+    private volatile EvaluationScope checkedIn;
+
+    FileIndex(final Snapshot snapshot) {
+        this.snapshot = snapshot;
+        if (snapshot.caseInsensitive) {
+            folded = new String[snapshot.paths.length];
+            for (int i = 0; i < folded.length; i++)
+                folded[i] = snapshot.paths[i].toLowerCase(Locale.ROOT);
+            Arrays.sort(folded);
+        } else {
+            folded = null;
+        }
+    }
+
+    /**
+     * @param path relative to the base directory, and {@link #isIndexable(String)}
+     * @return true if there is a file or directory with the path
+     */
+    public boolean exists(final String path) {
+        String normalized = path.replace('\\', '/');
+        while (normalized.endsWith("/"))
+            normalized = normalized.substring(0, normalized.length() - 1);
+        if (normalized.length() == 0) return snapshot.modified != 0;
+        if (folded != null) return Arrays.binarySearch(folded, normalized.toLowerCase(Locale.ROOT)) >= 0;
+        return Arrays.binarySearch(snapshot.paths, normalized) >= 0;
+    }
+
+    int size() {
+        return snapshot.paths.length;
+    }
+
+    String getPath(final int i) {
+        return snapshot.paths[i];
+    }
+
+    /**
+     * @return the size of the file in bytes, or -1 for a directory
+     */
+    long getSize(final int i) {
+        return snapshot.sizes[i];
+    }
+
+    static final class Snapshot implements Serializable {
+
+        private static final long serialVersionUID = 2L;
+
+        /** Modification time of the base directory, or 0 if it does not exist */
+        private final long modified;
+        private final String[] paths;
+        private final long[] sizes;
+        private final boolean caseInsensitive;
+
+        Snapshot(final long modified, final String[] paths, final long[] sizes, final boolean caseInsensitive) {
+            this.modified = modified;
+            this.paths = paths;
+            this.sizes = sizes;
+            this.caseInsensitive = caseInsensitive;
+        }
+
+    }
+
+    private static final class Lister extends MasterToSlaveFileCallable<Snapshot> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Snapshot invoke(final File base, final VirtualChannel channel) throws IOException {
+            if (!base.isDirectory()) return new Snapshot(0, new String[0], new long[0], false);
+            final long modified = base.lastModified();
+            final Collector collector = new Collector(base.toPath());
+            Files.walkFileTree(base.toPath(), EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, collector);
+            final List<Entry> entries = collector.entries;
+            entries.sort(null);
+            final String[] paths = new String[entries.size()];
+            final long[] sizes = new long[entries.size()];
+            for (int i = 0; i < paths.length; i++) {
+                paths[i] = entries.get(i).path;
+                sizes[i] = entries.get(i).size;
+            }
+            return new Snapshot(modified, paths, sizes, isCaseInsensitive(base));
+        }
+
+        /**
+         * @return true if the base directory can also be found with the case of its path swapped
+         */
+        private static boolean isCaseInsensitive(final File base) {
+            final String path = base.getAbsolutePath();
+            final StringBuilder swapped = new StringBuilder(path.length());
+            for (int i = 0; i < path.length(); i++) {
+                final char c = path.charAt(i);
+                swapped.append(Character.isUpperCase(c) ? Character.toLowerCase(c) : Character.toUpperCase(c));
+            }
+            if (swapped.toString().equals(path)) {
+                final String os = System.getProperty("os.name", "").toLowerCase(Locale.ROOT);
+                return os.startsWith("windows") || os.startsWith("mac");
+            }
+            final File other = new File(swapped.toString());
+            try {
+                return other.exists() && Files.isSameFile(base.toPath(), other.toPath());
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+
+        private final String path;
+        private final long size;
+
+        Entry(final String path, final long size) {
+            this.path = path;
+            this.size = size;
+        }
+
+        @Override
+        public int compareTo(final Entry other) {
+            return path.compareTo(other.path);
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            return other instanceof Entry && path.equals(((Entry) other).path);
+        }
+
+        @Override
+        public int hashCode() {
+            return path.hashCode();
+        }
+
+    }
+
+    private static final class Collector extends SimpleFileVisitor<Path> {
+
+        private final Path root;
+        private final List<Entry> entries = new ArrayList<Entry>();
+
+        Collector(final Path root) {
+            this.root = root;
+        }
+
+        private String relative(final Path path) {
+            return root.relativize(path).toString().replace(File.separatorChar, '/');
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) {
+            if (!dir.equals(root)) entries.add(new Entry(relative(dir), -1));
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+            entries.add(new Entry(relative(file), attrs.isDirectory() ? -1 : attrs.size()));
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+            return FileVisitResult.CONTINUE;
+        }
+
+    }
+
+    @Extension
+    public static final class Cleaner extends RunListener<Run<?, ?>> {
+
+        @Override
+        public void onCompleted(final Run<?, ?> run, final TaskListener listener) {
+            remove(run);
+        }
+
+    }
+
+}
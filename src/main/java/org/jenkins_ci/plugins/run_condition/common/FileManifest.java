@@ -0,0 +1,339 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The size, last modified time and CRC-32C digest of each file under a directory that matches Ant style patterns.
+ *
+ * Comparing the manifests made by two builds tells which files were added, removed or modified in between. A file is only
+ * modified if its content changed - touching a file, or checking it out again, does not count.
+ */
+public final class FileManifest implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int FORMAT = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Paths relative to the directory, with / as the separator, in order */
+    private final String[] paths;
+    private final long[] sizes;
+    private final long[] modified;
+    private final int[] digests;
+
+    FileManifest(final String[] paths, final long[] sizes, final long[] modified, final int[] digests) {
+        this.paths = paths;
+        this.sizes = sizes;
+        this.modified = modified;
+        this.digests = digests;
+    }
+
+    public int size() {
+        return paths.length;
+    }
+
+    String getPath(final int index) {
+        return paths[index];
+    }
+
+    int getDigest(final int index) {
+        return digests[index];
+    }
+
+    int indexOf(final String path) {
+        return Arrays.binarySearch(paths, path);
+    }
+
+    /**
+     * @param previous an older manifest of the same files
+     * @return the files that were added, removed or modified since the older manifest was made
+     */
+    public Changes changesSince(final FileManifest previous) {
+        int added = 0;
+        int removed = 0;
+        int changed = 0;
+        int i = 0;
+        int j = 0;
+        while (i < paths.length || j < previous.paths.length) {
+            final int order = i == paths.length ? 1 : j == previous.paths.length ? -1 : paths[i].compareTo(previous.paths[j]);
+            if (order < 0) {
+                added++;
+                i++;
+            } else if (order > 0) {
+                removed++;
+                j++;
+            } else {
+                if (sizes[i] != previous.sizes[j] || digests[i] != previous.digests[j]) changed++;
+                i++;
+                j++;
+            }
+        }
+        return new Changes(added, removed, changed);
+    }
+
+    /**
+     * Compact text form of the manifest, for saving with a build.
+     */
+    public String encode() {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeInt(FORMAT);
+            out.writeInt(paths.length);
+            for (int i = 0; i < paths.length; i++) {
+                out.writeUTF(paths[i]);
+                out.writeLong(sizes[i]);
+                out.writeLong(modified[i]);
+                out.writeInt(digests[i]);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * @return the manifest, or null if the text is not in a format that this version understands
+     */
+    public static FileManifest decode(final String encoded) {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(encoded))))) {
+            if (in.readInt() != FORMAT) return null;
+            final int count = in.readInt();
+            final String[] paths = new String[count];
+            final long[] sizes = new long[count];
+            final long[] modified = new long[count];
+            final int[] digests = new int[count];
+            for (int i = 0; i < count; i++) {
+                paths[i] = in.readUTF();
+                sizes[i] = in.readLong();
+                modified[i] = in.readLong();
+                digests[i] = in.readInt();
+            }
+            return new FileManifest(paths, sizes, modified, digests);
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public static final class Changes implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int added;
+        private final int removed;
+        private final int modified;
+
+        Changes(final int added, final int removed, final int modified) {
+            this.added = added;
+            this.removed = removed;
+            this.modified = modified;
+        }
+
+        public int getAdded() {
+            return added;
+        }
+
+        public int getRemoved() {
+            return removed;
+        }
+
+        public int getModified() {
+            return modified;
+        }
+
+        public boolean isEmpty() {
+            return added == 0 && removed == 0 && modified == 0;
+        }
+
+    }
+
+    /**
+     * Make the manifest on the node that has the directory.
+     *
+     * Files are matched as by {@link FileMatchScanner}. Only the files that are new, or whose size or last modified time
+     * differ from the previous manifest, are read, and they are digested in parallel. A file that is deleted before it is
+     * read is left out, as if it had already been deleted when the directory was walked.
+     */
+    public static final class Scanner extends MasterToSlaveFileCallable<FileManifest> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String[] includes;
+        private final String[] excludes;
+        private final FileManifest previous;
+
+        /**
+         * @param includes comma separated patterns, or null for all files
+         * @param excludes comma separated patterns, or null
+         * @param previous the digests of files that have not been touched since this manifest are reused, may be null
+         */
+        public Scanner(final String includes, final String excludes, final FileManifest previous) {
+            this.includes = FileMatchScanner.toPatterns(includes == null ? "**" : includes);
+            this.excludes = FileMatchScanner.toExcludePatterns(excludes);
+            this.previous = previous;
+        }
+
+        @Override
+        public FileManifest invoke(final File base, final VirtualChannel channel) throws IOException {
+            final TreeMap<String, BasicFileAttributes> files = new TreeMap<String, BasicFileAttributes>();
+            if (base.isDirectory()) {
+                final FileMatchScanner.Patterns patterns = new FileMatchScanner.Patterns(FileMatchScanner.localize(includes),
+                                                                                         FileMatchScanner.localize(excludes));
+                Files.walkFileTree(base.toPath(), EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                                   new Collector(base.toPath(), patterns, files));
+            }
+            return create(base, files);
+        }
+
+        /**
+         * @param files the attributes of the files found under the base directory, by path
+         */
+        FileManifest create(final File base, final TreeMap<String, BasicFileAttributes> files) throws IOException {
+            final int count = files.size();
+            final String[] paths = files.keySet().toArray(new String[count]);
+            final long[] sizes = new long[count];
+            final long[] modified = new long[count];
+            final int[] digests = new int[count];
+            final boolean[] deleted = new boolean[count];
+            final List<Integer> touched = new ArrayList<Integer>();
+            int i = 0;
+            for (BasicFileAttributes attributes : files.values()) {
+                sizes[i] = attributes.size();
+                modified[i] = attributes.lastModifiedTime().toMillis();
+                final int old = previous == null ? -1 : previous.indexOf(paths[i]);
+                if (old >= 0 && previous.sizes[old] == sizes[i] && previous.modified[old] == modified[i])
+                    digests[i] = previous.digests[old];
+                else
+                    touched.add(i);
+                i++;
+            }
+            try {
+                IntStream.range(0, touched.size()).parallel().forEach(t -> {
+                    final int index = touched.get(t);
+                    try {
+                        digests[index] = digest(new File(base, paths[index]));
+                    } catch (NoSuchFileException e) {
+                        // deleted since the directory was walked, so it is not there any more
+                        deleted[index] = true;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            int kept = 0;
+            for (int j = 0; j < count; j++) {
+                if (deleted[j]) continue;
+                paths[kept] = paths[j];
+                sizes[kept] = sizes[j];
+                modified[kept] = modified[j];
+                digests[kept] = digests[j];
+                kept++;
+            }
+            if (kept == count) return new FileManifest(paths, sizes, modified, digests);
+            return new FileManifest(Arrays.copyOf(paths, kept), Arrays.copyOf(sizes, kept), Arrays.copyOf(modified, kept),
+                                    Arrays.copyOf(digests, kept));
+        }
+
+        private static int digest(final File file) throws IOException {
+            final CRC32C crc = new CRC32C();
+            final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                while (channel.read(buffer) >= 0) {
+                    buffer.flip();
+                    crc.update(buffer);
+                    buffer.clear();
+                }
+            }
+            return (int) crc.getValue();
+        }
+
+    }
+
+    private static final class Collector extends SimpleFileVisitor<Path> {
+
+        private final Path root;
+        private final FileMatchScanner.Patterns patterns;
+        private final TreeMap<String, BasicFileAttributes> files;
+
+        Collector(final Path root, final FileMatchScanner.Patterns patterns, final TreeMap<String, BasicFileAttributes> files) {
+            this.root = root;
+            this.patterns = patterns;
+            this.files = files;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) {
+            if (dir.equals(root)) return FileVisitResult.CONTINUE;
+            return patterns.couldMatchUnder(root.relativize(dir).toString()) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+            final String path = root.relativize(file).toString();
+            if (!attrs.isDirectory() && patterns.matches(path)) files.put(path.replace(File.separatorChar, '/'), attrs);
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+            return FileVisitResult.CONTINUE;
+        }
+
+    }
+
+}
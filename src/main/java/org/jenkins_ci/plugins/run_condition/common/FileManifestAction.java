@@ -0,0 +1,74 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The file manifests made during a build, saved with the build so that later builds can tell which files have changed.
+ *
+ * Each manifest is saved under a key that identifies the files it covers, so that several conditions can keep their own.
+ */
+public class FileManifestAction extends InvisibleAction {
+
+    private final Map<String, String> manifests = new TreeMap<String, String>();
+
+    /**
+     * @return the manifest saved with the build under the key, or null if there is none
+     */
+    public static FileManifest get(final Run<?, ?> build, final String key) {
+        final FileManifestAction action = build == null ? null : build.getAction(FileManifestAction.class);
+        if (action == null) return null;
+        final String encoded;
+        synchronized (action.manifests) {
+            encoded = action.manifests.get(key);
+        }
+        return encoded == null ? null : FileManifest.decode(encoded);
+    }
+
+    /**
+     * Save the manifest with the build under the key, replacing any that is already there.
+     */
+    public static void put(final Run<?, ?> build, final String key, final FileManifest manifest) {
+        final FileManifestAction action;
+        synchronized (FileManifestAction.class) {
+            FileManifestAction existing = build.getAction(FileManifestAction.class);
+            if (existing == null) {
+                existing = new FileManifestAction();
+                build.addAction(existing);
+            }
+            action = existing;
+        }
+        final String encoded = manifest.encode();
+        synchronized (action.manifests) {
+            action.manifests.put(key, encoded);
+        }
+    }
+
+}
@@ -0,0 +1,246 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.types.selectors.SelectorUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Count the files under a directory that match Ant style include and exclude patterns, and add up their sizes, on the node
+ * that has the directory.
+ *
+ * Matches the files that {@link hudson.FilePath#list(String, String)} would return - comma separated patterns, with the Ant
+ * default excludes - but only the totals are sent back, and the walk stops as soon as the count or the size reaches its
+ * limit. Directories that can not contain a match are not visited at all.
+ */
+public final class FileMatchScanner extends MasterToSlaveFileCallable<FileMatchScanner.Result> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String[] includes;
+    private final String[] excludes;
+    private final int countLimit;
+    private final long sizeLimit;
+
+    /**
+     * @param includes comma separated patterns, or null for all files
+     * @param excludes comma separated patterns, or null
+     * @param countLimit stop when this many files have matched
+     * @param sizeLimit stop when the matched files add up to at least this many bytes
+     */
+    public FileMatchScanner(final String includes, final String excludes, final int countLimit, final long sizeLimit) {
+        this.includes = toPatterns(includes == null ? "**" : includes);
+        this.excludes = toExcludePatterns(excludes);
+        this.countLimit = countLimit;
+        this.sizeLimit = sizeLimit;
+    }
+
+    /**
+     * Patterns use / as the separator here, and the separator of the node when matching.
+     */
+    static String[] toPatterns(final String patterns) {
+        final List<String> normalized = new ArrayList<String>();
+        if (patterns != null) {
+            for (String pattern : patterns.split(",")) {
+                String trimmed = pattern.trim().replace('\\', '/');
+                if (trimmed.length() == 0) continue;
+                // as in Ant, "dir/" means everything under dir
+                if (trimmed.endsWith("/")) trimmed += "**";
+                normalized.add(trimmed);
+            }
+        }
+        return normalized.toArray(new String[normalized.size()]);
+    }
+
+    /**
+     * The exclude patterns, and the Ant default excludes.
+     */
+    static String[] toExcludePatterns(final String excludes) {
+        final List<String> allExcludes = new ArrayList<String>();
+        Collections.addAll(allExcludes, toPatterns(excludes));
+        Collections.addAll(allExcludes, toPatterns(String.join(",", DirectoryScanner.getDefaultExcludes())));
+        return allExcludes.toArray(new String[allExcludes.size()]);
+    }
+
+    @Override
+    public Result invoke(final File base, final VirtualChannel channel) throws IOException {
+        if (!base.isDirectory()) return new Result(0, 0, false);
+        final Counter counter = new Counter(base.toPath(), new Patterns(localize(includes), localize(excludes)), countLimit, sizeLimit);
+        Files.walkFileTree(base.toPath(), EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, counter);
+        return new Result(counter.count, counter.size, counter.stopped);
+    }
+
+    /**
+     * Count the matching files in the index instead of walking the directory.
+     */
+    public Result scan(final FileIndex index) {
+        final Patterns patterns = new Patterns(localize(includes), localize(excludes));
+        int count = 0;
+        long size = 0;
+        for (int i = 0; i < index.size(); i++) {
+            final long fileSize = index.getSize(i);
+            if (fileSize < 0 || !patterns.matches(index.getPath(i).replace('/', File.separatorChar))) continue;
+            count++;
+            size += fileSize;
+            if (count >= countLimit || size >= sizeLimit) return new Result(count, size, true);
+        }
+        return new Result(count, size, false);
+    }
+
+    public static final class Result implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int count;
+        private final long size;
+        private final boolean stopped;
+
+        Result(final int count, final long size, final boolean stopped) {
+            this.count = count;
+            this.size = size;
+            this.stopped = stopped;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @return the total size of the matched files, in bytes
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return true if a limit was reached before all of the files were visited, so the totals are only lower bounds
+         */
+        public boolean isStopped() {
+            return stopped;
+        }
+
+    }
+
+    static String[] localize(final String[] patterns) {
+        final String[] localized = new String[patterns.length];
+        for (int i = 0; i < patterns.length; i++)
+            localized[i] = patterns[i].replace('/', File.separatorChar);
+        return localized;
+    }
+
+    private static final class Counter extends SimpleFileVisitor<Path> {
+
+        private final Path root;
+        private final Patterns patterns;
+        private final int countLimit;
+        private final long sizeLimit;
+        private int count;
+        private long size;
+        private boolean stopped;
+
+        Counter(final Path root, final Patterns patterns, final int countLimit, final long sizeLimit) {
+            this.root = root;
+            this.patterns = patterns;
+            this.countLimit = countLimit;
+            this.sizeLimit = sizeLimit;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) {
+            if (dir.equals(root)) return FileVisitResult.CONTINUE;
+            return patterns.couldMatchUnder(root.relativize(dir).toString()) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+            if (attrs.isDirectory() || !patterns.matches(root.relativize(file).toString())) return FileVisitResult.CONTINUE;
+            count++;
+            size += attrs.size();
+            stopped = count >= countLimit || size >= sizeLimit;
+            return stopped ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+            // unreadable files, broken links and link loops are not listed by FilePath.list either
+            return FileVisitResult.CONTINUE;
+        }
+
+    }
+
+    /**
+     * Matches paths relative to the base directory, using the separator of the node.
+     */
+    static final class Patterns {
+
+        private static final String ALL_BELOW = File.separator + "**";
+
+        private final String[] includes;
+        private final String[] excludes;
+
+        Patterns(final String[] includes, final String[] excludes) {
+            this.includes = includes;
+            this.excludes = excludes;
+        }
+
+        boolean matches(final String path) {
+            return matchesAny(includes, path) && !matchesAny(excludes, path);
+        }
+
+        boolean couldMatchUnder(final String directory) {
+            for (String exclude : excludes)
+                if (exclude.endsWith(ALL_BELOW)
+                        && SelectorUtils.matchPath(exclude.substring(0, exclude.length() - ALL_BELOW.length()), directory, true))
+                    return false;
+            for (String include : includes)
+                if (SelectorUtils.matchPatternStart(include, directory, true)) return true;
+            return false;
+        }
+
+        private static boolean matchesAny(final String[] patterns, final String path) {
+            for (String pattern : patterns)
+                if (SelectorUtils.matchPath(pattern, path, true)) return true;
+            return false;
+        }
+
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded, least recently used cache of compiled regular expressions.
+ *
+ * Compiling the pattern happens outside of the lock, so two threads asking for the same new expression may both compile
+ * it - the second one to finish just replaces the first.
+ */
+public final class PatternCache {
+
+    private final int maxSize;
+    private final LruMap patterns;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public PatternCache(final int maxSize) {
+        if (maxSize < 1) throw new IllegalArgumentException("maxSize must be at least 1 but was " + maxSize);
+        this.maxSize = maxSize;
+        this.patterns = new LruMap(maxSize, evictions);
+    }
+
+    /**
+     * @throws java.util.regex.PatternSyntaxException if the expression is not a valid regular expression
+     */
+    public Pattern get(final String regex) {
+        synchronized (this) {
+            final Pattern cached = patterns.get(regex);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        misses.incrementAndGet();
+        final Pattern compiled = Pattern.compile(regex);
+        synchronized (this) {
+            patterns.put(regex, compiled);
+        }
+        return compiled;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized int size() {
+        return patterns.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public synchronized void clear() {
+        patterns.clear();
+    }
+
+    private static final class LruMap extends LinkedHashMap<String, Pattern> {
+
+        private static final long serialVersionUID = 1L;
+        private final int maxSize;
+        private final AtomicLong evictions;
+
+        LruMap(final int maxSize, final AtomicLong evictions) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Pattern> eldest) {
+            if (size() > maxSize) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import hudson.Extension;
+import hudson.model.AbstractBuild;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import jenkins.util.SystemProperties;
+import org.jenkins_ci.plugins.run_condition.RunCondition;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Results of the build stable conditions (see {@link RunCondition#isBuildStable()}) evaluated for a build, so that the perform
+ * stage can reuse the result from the prebuild stage instead of evaluating the condition again.
+ *
+ * Results are kept per condition instance and stage until the build completes. Exceptions are never cached. The
+ * cache can be switched off with the system property
+ * <code>org.jenkins_ci.plugins.run_condition.common.ResultCache.disabled=true</code>.
+ */
+public final class ResultCache {
+
+    private static final boolean DISABLED = SystemProperties.getBoolean(ResultCache.class.getName() + ".disabled");
+
+    private static final Map<AbstractBuild<?, ?>, Map<RunCondition, Boolean[]>> RESULTS =
+                                                                        new WeakHashMap<AbstractBuild<?, ?>, Map<RunCondition, Boolean[]>>();
+
+    private ResultCache() {}
+
+    /**
+     * @return the result of an earlier evaluation of the condition for the build, in this stage or (as the condition is build
+     *         stable) the other one - or null if there is none
+     */
+    public static Boolean get(final AbstractBuild<?, ?> build, final RunCondition condition, final EvaluationScope.Stage stage) {
+        if (!isCacheable(build, condition)) return null;
+        synchronized (RESULTS) {
+            final Map<RunCondition, Boolean[]> results = RESULTS.get(build);
+            if (results == null) return null;
+            final Boolean[] byStage = results.get(condition);
+            if (byStage == null) return null;
+            if (byStage[stage.ordinal()] != null) return byStage[stage.ordinal()];
+            for (Boolean result : byStage)
+                if (result != null) return result;
+            return null;
+        }
+    }
+
+    public static void put(final AbstractBuild<?, ?> build, final RunCondition condition, final EvaluationScope.Stage stage,
+                           final boolean result) {
+        if (!isCacheable(build, condition)) return;
+        synchronized (RESULTS) {
+            Map<RunCondition, Boolean[]> results = RESULTS.get(build);
+            if (results == null) {
+                results = new IdentityHashMap<RunCondition, Boolean[]>();
+                RESULTS.put(build, results);
+            }
+            Boolean[] byStage = results.get(condition);
+            if (byStage == null) {
+                byStage = new Boolean[EvaluationScope.Stage.values().length];
+                results.put(condition, byStage);
+            }
+            byStage[stage.ordinal()] = result;
+        }
+    }
+
+    /**
+     * Drop the results of the build.
+     */
+    public static void remove(final Run<?, ?> build) {
+        synchronized (RESULTS) {
+            RESULTS.remove(build);
+        }
+    }
+
+    private static boolean isCacheable(final AbstractBuild<?, ?> build, final RunCondition condition) {
+        return !DISABLED && build != null && condition != null && condition.isBuildStable();
+    }
+
+    @Extension
+    public static final class Cleaner extends RunListener<Run<?, ?>> {
+
+        @Override
+        public void onCompleted(final Run<?, ?> run, final TaskListener listener) {
+            remove(run);
+        }
+
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import java.time.ZoneId;
+
+/**
+ * A range of minutes of the day, from the start minute to the end minute inclusive, in a time zone.
+ *
+ * If the end is before the start, then the window crosses midnight - 22:00 to 04:00 is from 22:00 until 04:00 the next
+ * morning. The window is checked with arithmetic on the time in milliseconds, so checking a time allocates nothing.
+ *
+ * The result of the last check is kept until the next time that the window opens or closes, or the zone offset changes,
+ * so until then a check is only a comparison. Minutes of the day are minutes of the local time, so on the day that the
+ * clocks go forward a window that starts in the skipped hour opens when the clocks change, and on the day that they go
+ * back a window in the repeated hour is open twice.
+ */
+public final class TimeWindow {
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    private static final long MILLIS_PER_MINUTE = 60 * 1000;
+
+    private final int start;
+    private final int end;
+    private final ZoneOffsets offsets;
+    private volatile Result last = new Result(0, 0, false);
+
+    /**
+     * @param start the first minute of the day in the window
+     * @param end the last minute of the day in the window
+     */
+    public TimeWindow(final int start, final int end, final ZoneId zone) {
+        if (start < 0 || start >= MINUTES_PER_DAY || end < 0 || end >= MINUTES_PER_DAY)
+            throw new IllegalArgumentException("Minutes of the day must be from 0 to " + (MINUTES_PER_DAY - 1));
+        this.start = start;
+        this.end = end;
+        this.offsets = new ZoneOffsets(zone);
+    }
+
+    public static int minuteOfDay(final int hours, final int minutes) {
+        return hours * 60 + minutes;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public boolean isOvernight() {
+        return end < start;
+    }
+
+    public ZoneId getZone() {
+        return offsets.getZone();
+    }
+
+    /**
+     * @return the minute of the day, in the time zone of the window, at the time
+     */
+    public int minuteOfDay(final long epochMillis) {
+        return (int) Math.floorMod(Math.floorDiv(offsets.toLocalMillis(epochMillis), MILLIS_PER_MINUTE), (long) MINUTES_PER_DAY);
+    }
+
+    public boolean contains(final long epochMillis) {
+        final Result current = last;
+        if (epochMillis >= current.from && epochMillis < current.until) return current.inside;
+        return check(epochMillis).inside;
+    }
+
+    /**
+     * @return the first time after this one at which the window opens or closes - or the zone offset changes, when it may
+     */
+    public long getNextChange(final long epochMillis) {
+        final Result current = last;
+        if (epochMillis >= current.from && epochMillis < current.until) return current.until;
+        return check(epochMillis).until;
+    }
+
+    private Result check(final long epochMillis) {
+        final int offset = offsets.getOffsetMillis(epochMillis);
+        final long localMillis = epochMillis + offset;
+        final long localMinute = Math.floorDiv(localMillis, MILLIS_PER_MINUTE);
+        final int minute = (int) Math.floorMod(localMinute, (long) MINUTES_PER_DAY);
+        final boolean inside = containsMinute(minute);
+        // the first minute with the other result, which the offset does not change before the next transition
+        final int boundary = inside ? (end + 1) % MINUTES_PER_DAY : start;
+        final int minutesToBoundary = Math.floorMod(boundary - minute, MINUTES_PER_DAY);
+        final long localBoundary = (localMinute + (minutesToBoundary == 0 ? MINUTES_PER_DAY : minutesToBoundary)) * MILLIS_PER_MINUTE;
+        final long until = Math.min(localBoundary - offset, offsets.getNextTransition(epochMillis));
+        final Result result = new Result(epochMillis, until, inside);
+        last = result;
+        return result;
+    }
+
+    public boolean containsMinute(final int minuteOfDay) {
+        return start <= end ? minuteOfDay >= start && minuteOfDay <= end : minuteOfDay >= start || minuteOfDay <= end;
+    }
+
+    private static final class Result {
+
+        private final long from;
+        private final long until;
+        private final boolean inside;
+
+        Result(final long from, final long until, final boolean inside) {
+            this.from = from;
+            this.until = until;
+            this.inside = inside;
+        }
+
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import jenkins.util.SystemProperties;
+import org.jenkinsci.plugins.tokenmacro.MacroEvaluationException;
+import org.jenkinsci.plugins.tokenmacro.TokenMacro;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * Expand tokens with the Token Macro plugin, remembering the result for the rest of the {@link EvaluationScope}.
+ *
+ * Macros whose value can change while the conditions are being evaluated are always expanded. By default that is just the
+ * build log macros, as every condition writes to the log. More can be added, as a comma separated list of macro names, with
+ * the system property <code>org.jenkins_ci.plugins.run_condition.common.TokenExpansion.uncachedMacros</code>.
+ */
+public final class TokenExpansion {
+
+    static final String DEFAULT_UNCACHED_MACROS = "BUILD_LOG,BUILD_LOG_EXCERPT,BUILD_LOG_MULTILINE_REGEX,BUILD_LOG_REGEX";
+
+    /** The start of a macro: ${NAME}, $NAME, or $$ for a literal $ */
+    private static final Pattern MACRO_REFERENCE = Pattern.compile("\\$[{$A-Za-z_]");
+
+    private static final Pattern UNCACHED = createUncachedPattern(SystemProperties.getString(TokenExpansion.class.getName()
+                                                                                              + ".uncachedMacros", DEFAULT_UNCACHED_MACROS));
+
+    private TokenExpansion() {}
+
+    public static String expandAll(final AbstractBuild<?, ?> build, final BuildListener listener, final String template)
+                                                                    throws MacroEvaluationException, IOException, InterruptedException {
+        ConditionTraceAction.recordInput(template);
+        return expand(build, listener, template);
+    }
+
+    /**
+     * Like {@link #expandAll}, without recording the template as an input of the condition being evaluated - for expanding
+     * the templates of other conditions ahead of their own evaluation, which records them.
+     */
+    public static String expand(final AbstractBuild<?, ?> build, final BuildListener listener, final String template)
+                                                                    throws MacroEvaluationException, IOException, InterruptedException {
+        final EvaluationScope scope = EvaluationScope.get(build);
+        if (scope == null || template == null || !isCacheable(template))
+            return TokenMacro.expandAll(build, listener, template);
+        final String cached = scope.getExpansion(template);
+        if (cached != null) return cached;
+        final String expanded = TokenMacro.expandAll(build, listener, template);
+        if (expanded != null)
+            scope.putExpansion(template, expanded);
+        return expanded;
+    }
+
+    /**
+     * @return true if expanding the template could change it, so that it can only be checked once it has been expanded
+     */
+    public static boolean hasMacros(final String template) {
+        return template != null && MACRO_REFERENCE.matcher(template).find();
+    }
+
+    static boolean isCacheable(final String template) {
+        return UNCACHED == null || !UNCACHED.matcher(template).find();
+    }
+
+    static Pattern createUncachedPattern(final String macroNames) {
+        final StringBuilder alternatives = new StringBuilder();
+        if (macroNames != null) {
+            for (String name : macroNames.split(",")) {
+                final String trimmed = name.trim();
+                if (trimmed.length() == 0) continue;
+                if (alternatives.length() > 0) alternatives.append('|');
+                alternatives.append(Pattern.quote(trimmed));
+            }
+        }
+        if (alternatives.length() == 0) return null;
+        return Pattern.compile("\\$\\{?(?:" + alternatives + ")(?![A-Za-z0-9_])");
+    }
+
+}
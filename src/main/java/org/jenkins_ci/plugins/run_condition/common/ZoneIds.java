@@ -0,0 +1,86 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import hudson.Util;
+import hudson.util.FormValidation;
+import org.jenkins_ci.plugins.run_condition.Messages;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Time zones configured on conditions, by their IDs - e.g. Europe/London, America/New_York or UTC.
+ */
+public final class ZoneIds {
+
+    private ZoneIds() {
+    }
+
+    /**
+     * @param id the ID of the time zone, or null or empty for the time zone of the Jenkins master
+     */
+    public static ZoneId get(final String id) {
+        final String zone = Util.fixEmptyAndTrim(id);
+        return zone == null ? ZoneId.systemDefault() : ZoneId.of(zone);
+    }
+
+    public static boolean isValid(final String id) {
+        try {
+            get(id);
+            return true;
+        } catch (DateTimeException e) {
+            return false;
+        }
+    }
+
+    public static FormValidation check(final String id) {
+        return isValid(id) ? FormValidation.ok() : FormValidation.error(Messages.timeZone_validation_invalid(id));
+    }
+
+    /**
+     * @return the time in the zone as yyyy-MM-dd HH:mm, without parsing a format as String.format would, since a time is
+     *         logged for every check
+     */
+    public static String formatMinute(final long epochMillis, final ZoneId zone) {
+        final LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), zone);
+        final char[] chars = {'0', '0', '0', '0', '-', '0', '0', '-', '0', '0', ' ', '0', '0', ':', '0', '0'};
+        putDigits(chars, 0, 4, time.getYear());
+        putDigits(chars, 5, 2, time.getMonthValue());
+        putDigits(chars, 8, 2, time.getDayOfMonth());
+        putDigits(chars, 11, 2, time.getHour());
+        putDigits(chars, 14, 2, time.getMinute());
+        return new String(chars);
+    }
+
+    private static void putDigits(final char[] chars, final int offset, final int digits, final int value) {
+        int remaining = value;
+        for (int i = offset + digits - 1; i >= offset; i--, remaining /= 10)
+            chars[i] = (char) ('0' + remaining % 10);
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/**
+ * The offset from UTC of a time zone at an instant, without allocating anything while the offset stays the same.
+ *
+ * The offset found last is kept, with the span of time that it applies to - from the transition before it to the transition
+ * after it. Times in that span are answered with arithmetic, and only a time outside of it looks at the zone rules again.
+ */
+public final class ZoneOffsets {
+
+    private final ZoneId zone;
+    private final ZoneRules rules;
+    private volatile Span span = new Span(0, 0, 0);
+
+    public ZoneOffsets(final ZoneId zone) {
+        this.zone = zone;
+        this.rules = zone.getRules();
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * @return the offset from UTC, in milliseconds, at the time
+     */
+    public int getOffsetMillis(final long epochMillis) {
+        final Span current = span;
+        if (epochMillis >= current.from && epochMillis < current.until) return current.offsetMillis;
+        return find(epochMillis).offsetMillis;
+    }
+
+    /**
+     * @return the local time, as milliseconds since the local epoch
+     */
+    public long toLocalMillis(final long epochMillis) {
+        return epochMillis + getOffsetMillis(epochMillis);
+    }
+
+    /**
+     * @return the next time after this one at which the offset changes, or {@link Long#MAX_VALUE} if it never does
+     */
+    public long getNextTransition(final long epochMillis) {
+        final Span current = span;
+        if (epochMillis >= current.from && epochMillis < current.until) return current.until;
+        return find(epochMillis).until;
+    }
+
+    private Span find(final long epochMillis) {
+        final Span found;
+        if (rules.isFixedOffset()) {
+            found = new Span(Long.MIN_VALUE, Long.MAX_VALUE, rules.getOffset(Instant.EPOCH).getTotalSeconds() * 1000);
+        } else {
+            final Instant instant = Instant.ofEpochMilli(epochMillis);
+            final ZoneOffsetTransition previous = rules.previousTransition(instant.plusMillis(1));
+            final ZoneOffsetTransition next = rules.nextTransition(instant);
+            found = new Span(previous == null ? Long.MIN_VALUE : previous.toEpochSecond() * 1000,
+                             next == null ? Long.MAX_VALUE : next.toEpochSecond() * 1000,
+                             rules.getOffset(instant).getTotalSeconds() * 1000);
+        }
+        span = found;
+        return found;
+    }
+
+    private static final class Span {
+
+        private final long from;
+        private final long until;
+        private final int offsetMillis;
+
+        Span(final long from, final long until, final int offsetMillis) {
+            this.from = from;
+            this.until = until;
+            this.offsetMillis = offsetMillis;
+        }
+
+    }
+
+}
@@ -57,6 +57,14 @@ public class BatchFileCondition extends CommandInterperterCondition {
         public String getDisplayName() {
             return Messages.BatchfileCondition_Displayname();
         }
+
+        public long getEstimatedCost() {
+            return COST_PROCESS;
+        }
+
+        public boolean isSideEffectFree() {
+            return false;
+        }
         public boolean isApplicable(Class<? extends AbstractProject> jobType) {
             return true;
         }
@@ -26,12 +26,23 @@ package org.jenkins_ci.plugins.run_condition.contributed;
 import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.Launcher;
+import hudson.Proc;
 import hudson.Util;
 import hudson.model.AbstractBuild;
 import hudson.model.BuildListener;
+import hudson.model.Node;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import jenkins.util.Timer;
 import org.jenkins_ci.plugins.run_condition.common.AlwaysPrebuildRunCondition;
+import org.jenkins_ci.plugins.run_condition.common.EnvironmentCache;
+import org.kohsuke.stapler.DataBoundSetter;
 
 /**
  * Common part between {@link ShellCondition} and {@link BatchFileCondition }.
@@ -44,6 +55,16 @@ public abstract class CommandInterperterCondition extends AlwaysPrebuildRunCondi
      */
     protected final String command;
 
+    /**
+     * Seconds to wait for the script before killing it, or 0 to wait for as long as it takes.
+     */
+    private int timeout;
+
+    /**
+     * Bytes of output from the script to copy to the build log, or 0 for all of it.
+     */
+    private long maxOutput;
+
     public CommandInterperterCondition(String command) {
         this.command = command;
     }
@@ -52,13 +73,49 @@ public abstract class CommandInterperterCondition extends AlwaysPrebuildRunCondi
         return command;
     }
 
+    public int getTimeout() {
+        return timeout;
+    }
+
+    @DataBoundSetter
+    public void setTimeout(int timeout) {
+        this.timeout = Math.max(0, timeout);
+    }
+
+    public long getMaxOutput() {
+        return maxOutput;
+    }
+
+    @DataBoundSetter
+    public void setMaxOutput(long maxOutput) {
+        this.maxOutput = Math.max(0, maxOutput);
+    }
+
     @Override
     public boolean runPerform(AbstractBuild<?, ?> build, BuildListener listener) throws InterruptedException {
         FilePath ws = build.getWorkspace();
         if (ws == null) {
             return false;
         }
+        EnvVars envVars;
+        try {
+            envVars = getEnvironment(build, listener);
+        } catch (IOException e) {
+            Util.displayIOException(e,listener);
+            e.printStackTrace(listener.fatalError(Messages.CommandInterpreterCondition_CommandFailed()));
+            return false;
+        }
+
+        try {
+            Boolean result = evaluateWithoutScript(ws, envVars, listener);
+            if (result != null)
+                return result;
+        } catch (IOException e) {
+            // run the script instead, which will report any problem with the workspace
+        }
+
         FilePath script = null;
+        boolean temporaryScript = false;
 
         try {
             Launcher launcher = null;
@@ -73,7 +130,11 @@ public abstract class CommandInterperterCondition extends AlwaysPrebuildRunCondi
             }
 
             try {
-                script = createScriptFile(ws);
+                script = getCachedScript(build);
+                if (script == null) {
+                    script = createScriptFile(ws);
+                    temporaryScript = true;
+                }
             } catch (IOException e) {
                 Util.displayIOException(e,listener);
                 e.printStackTrace(listener.fatalError(Messages.CommandInterpreterCondition_UnableToProduceScript()));
@@ -82,15 +143,18 @@ public abstract class CommandInterperterCondition extends AlwaysPrebuildRunCondi
 
             int r;
             try {
-                EnvVars envVars = build.getEnvironment(listener);
-                // on Windows environment variables are converted to all upper case,
-                // but no such conversions are done on Unix, so to make this cross-platform,
-                // convert variables to all upper cases.
-                for(Map.Entry<String,String> e : build.getBuildVariables().entrySet())
-                    envVars.put(e.getKey(),e.getValue());
-
-                r = launcher.launch().cmds(buildCommandLine(script)).envs(envVars).stdout(listener).pwd(ws).join();
-
+                OutputStream out = maxOutput > 0 ? new LimitedOutputStream(listener.getLogger(), maxOutput) : listener.getLogger();
+                Integer result = runInWorker(ws, launcher, script, envVars, out, listener);
+                if (result != null) {
+                    r = result;
+                } else {
+                    Proc proc = launcher.launch().cmds(buildCommandLine(script)).envs(envVars).stdout(out).pwd(ws).start();
+                    AtomicBoolean timedOut = new AtomicBoolean();
+                    r = join(proc, timeout, timedOut);
+                    if (timedOut.get())
+                        listener.getLogger().println(Messages.CommandInterpreterCondition_TimedOut(timeout));
+                }
+                out.flush();
             } catch (IOException e) {
                 Util.displayIOException(e,listener);
                 e.printStackTrace(listener.fatalError(Messages.CommandInterpreterCondition_CommandFailed()));
@@ -99,7 +163,7 @@ public abstract class CommandInterperterCondition extends AlwaysPrebuildRunCondi
             return r==0;
         } finally {
             try {
-                if(script!=null)
+                if(script!=null && temporaryScript)
                 script.delete();
             } catch (IOException e) {
                 Util.displayIOException(e,listener);
@@ -108,6 +172,120 @@ public abstract class CommandInterperterCondition extends AlwaysPrebuildRunCondi
         }
     }
 
+    private static EnvVars getEnvironment(AbstractBuild<?, ?> build, BuildListener listener) throws IOException, InterruptedException {
+        EnvVars envVars = EnvironmentCache.getEnvironment(build, listener);
+        // on Windows environment variables are converted to all upper case,
+        // but no such conversions are done on Unix, so to make this cross-platform,
+        // convert variables to all upper cases.
+        for(Map.Entry<String,String> e : build.getBuildVariables().entrySet())
+            envVars.put(e.getKey(),e.getValue());
+        return envVars;
+    }
+
+    /**
+     * Evaluates the condition without creating a script file or starting a process, when the script is simple enough.
+     *
+     * @return the result, or null if the script has to be run
+     */
+    protected Boolean evaluateWithoutScript(FilePath ws, EnvVars envVars, BuildListener listener) throws IOException, InterruptedException {
+        return null;
+    }
+
+    /**
+     * Runs the script without launching a new process for it, when the condition is configured to.
+     *
+     * @param launcher the launcher that the script would be launched with
+     * @param out where the output of the script goes
+     * @return the exit code of the script, or null if the script has to be launched
+     */
+    protected Integer runInWorker(FilePath ws, Launcher launcher, FilePath script, EnvVars envVars, OutputStream out,
+                                  BuildListener listener)
+            throws IOException, InterruptedException {
+        return null;
+    }
+
+    /**
+     * The script file in the {@link ScriptCache} of the node that the build runs on.
+     *
+     * @return the script, or null if the cache is switched off or the node is not available
+     */
+    private FilePath getCachedScript(AbstractBuild<?, ?> build) throws IOException, InterruptedException {
+        if (!ScriptCache.ENABLED)
+            return null;
+        Node node = build.getBuiltOn();
+        FilePath root = node == null ? null : node.getRootPath();
+        return root == null ? null : ScriptCache.getScript(root, getContents(), getFileExtension());
+    }
+
+    /**
+     * Waits for the process to finish, and kills it, and the processes that it started, if it takes too long.
+     *
+     * @param timeout seconds to wait before killing the process, or 0 to wait for as long as it takes
+     * @param timedOut set when the process is killed because it did not finish in time
+     * @return the exit code of the process
+     */
+    static int join(final Proc proc, int timeout, final AtomicBoolean timedOut) throws IOException, InterruptedException {
+        if (timeout <= 0)
+            return proc.join();
+        ScheduledFuture<?> killer = Timer.get().schedule(() -> {
+            try {
+                // a process that has just finished was not killed, so it did not time out
+                if (proc.isAlive()) {
+                    timedOut.set(true);
+                    proc.kill();
+                }
+            } catch (IOException e) {
+                // join reports what happened to the process
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, timeout, TimeUnit.SECONDS);
+        try {
+            return proc.join();
+        } finally {
+            killer.cancel(false);
+        }
+    }
+
+    /**
+     * Copies the output of the script until the limit is reached, and then says that the rest was left out.
+     */
+    static final class LimitedOutputStream extends FilterOutputStream {
+
+        private long remaining;
+
+        LimitedOutputStream(OutputStream out, long limit) {
+            super(out);
+            this.remaining = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0)
+                return;
+            int allowed = (int) Math.min(len, remaining);
+            out.write(b, off, allowed);
+            remaining -= allowed;
+            if (remaining <= 0) {
+                out.write(('\n' + Messages.CommandInterpreterCondition_OutputTruncated() + '\n').getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        }
+
+        /**
+         * The build log stays open.
+         */
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
     /**
      * Creates a script file in a temporary name in the specified directory.
      */
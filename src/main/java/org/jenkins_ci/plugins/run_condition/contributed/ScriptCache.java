@@ -0,0 +1,171 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2012 by Chris Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.contributed;
+
+import hudson.FilePath;
+import hudson.Util;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import jenkins.util.SystemProperties;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Script files kept in a directory under the root of each node, named after a digest of their contents, so that a script
+ * is written once and then run by every evaluation of every condition with the same contents.
+ *
+ * Scripts are written to a temporary file and renamed, so a script is never seen half written. A script that is found with
+ * different contents - cut short by a crash or a full disk, or changed - is written again. Every use of a script updates its
+ * last modified time. When there are more than
+ * <code>org.jenkins_ci.plugins.run_condition.contributed.ScriptCache.maxScripts</code> (256) scripts, the ones that have not
+ * been used for the longest are deleted - but never one that has been used in the last hour, as it may be about to run.
+ *
+ * The cache is switched off unless the system property
+ * <code>org.jenkins_ci.plugins.run_condition.contributed.ScriptCache.enabled=true</code> is set, as a script in the cache is
+ * not in the workspace - so a script that finds files next to itself, with <code>dirname "$0"</code> or <code>%~dp0</code>,
+ * would look in the cache instead. When it is off, a temporary script is written in the workspace for each evaluation.
+ */
+public final class ScriptCache {
+
+    static final boolean ENABLED = SystemProperties.getBoolean(ScriptCache.class.getName() + ".enabled");
+    static final int MAX_SCRIPTS = SystemProperties.getInteger(ScriptCache.class.getName() + ".maxScripts", 256);
+
+    /** The directory under the root of the node */
+    public static final String DIRECTORY = "run-condition-scripts";
+
+    /** How long a script is safe from eviction after it was last used */
+    static final long RECENT = TimeUnit.HOURS.toMillis(1);
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private ScriptCache() {
+    }
+
+    /**
+     * @param root the root directory of the node that the script will run on
+     * @param contents the script
+     * @param extension the extension that the script file needs, including the dot
+     * @return the script file, which must not be deleted or changed
+     */
+    public static FilePath getScript(final FilePath root, final String contents, final String extension)
+            throws IOException, InterruptedException {
+        final FilePath directory = root.child(DIRECTORY);
+        final String remote = directory.act(new Store(digest(contents) + extension, contents, MAX_SCRIPTS));
+        return new FilePath(directory.getChannel(), remote);
+    }
+
+    static String digest(final String contents) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Util.toHexString(digest.digest(contents.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Make sure that the script is in the directory on the node, and return its path there.
+     */
+    static final class Store extends MasterToSlaveFileCallable<String> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private final String contents;
+        private final int maxScripts;
+
+        Store(final String name, final String contents, final int maxScripts) {
+            this.name = name;
+            this.contents = contents;
+            this.maxScripts = maxScripts;
+        }
+
+        @Override
+        public String invoke(final File directory, final VirtualChannel channel) throws IOException {
+            final File script = new File(directory, name);
+            final long now = System.currentTimeMillis();
+            // scripts have always been written in the default encoding of the node
+            final byte[] bytes = contents.getBytes(Charset.defaultCharset());
+            if (isIntact(script, bytes)) {
+                script.setLastModified(now);
+                return script.getAbsolutePath();
+            }
+            Files.createDirectories(directory.toPath());
+            final Path temporary = Files.createTempFile(directory.toPath(), name, TEMPORARY_SUFFIX);
+            try {
+                Files.write(temporary, bytes);
+                try {
+                    Files.move(temporary, script.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temporary, script.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+            evict(directory, script, now);
+            return script.getAbsolutePath();
+        }
+
+        /**
+         * @return false if the script is missing, or has been cut short (e.g. by a full disk) or changed since it was written
+         */
+        private static boolean isIntact(final File script, final byte[] bytes) throws IOException {
+            if (!script.isFile() || script.length() != bytes.length) return false;
+            return Arrays.equals(Files.readAllBytes(script.toPath()), bytes);
+        }
+
+        private void evict(final File directory, final File keep, final long now) {
+            final File[] files = directory.listFiles();
+            if (files == null) return;
+            int count = files.length;
+            if (count <= maxScripts) return;
+            final long[] lastModified = new long[files.length];
+            final Integer[] order = new Integer[files.length];
+            for (int i = 0; i < files.length; i++) {
+                lastModified[i] = files[i].lastModified();
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingLong(i -> lastModified[i]));
+            for (Integer i : order) {
+                if (count <= maxScripts || now - lastModified[i] <= RECENT) break;
+                if (!files[i].equals(keep) && files[i].delete()) count--;
+            }
+        }
+
+    }
+
+}
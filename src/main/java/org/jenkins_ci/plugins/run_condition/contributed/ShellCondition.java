@@ -23,16 +23,24 @@
  */
 package org.jenkins_ci.plugins.run_condition.contributed;
 
+import hudson.EnvVars;
 import hudson.Extension;
 import hudson.FilePath;
+import hudson.Launcher;
 import hudson.Util;
 import hudson.model.AbstractProject;
+import hudson.model.BuildListener;
 import hudson.model.Hudson;
+import hudson.remoting.RemoteOutputStream;
 import hudson.tasks.Shell;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
 /**
  * Executes a series of commands by using a shell.
@@ -41,11 +49,25 @@ import org.kohsuke.stapler.DataBoundConstructor;
  */
 public class ShellCondition extends CommandInterperterCondition {
 
+    /**
+     * Run the script in a {@link ShellWorker}, rather than in a new shell, when workers are enabled on the controller.
+     */
+    private boolean useWorker;
+
     @DataBoundConstructor
     public ShellCondition(String command) {
         super(fixCrLf(command));
     }
 
+    public boolean isUseWorker() {
+        return useWorker;
+    }
+
+    @DataBoundSetter
+    public void setUseWorker(boolean useWorker) {
+        this.useWorker = useWorker;
+    }
+
     /**
      * Fix CR/LF and always make it Unix style.
      */
@@ -89,6 +111,40 @@ public class ShellCondition extends CommandInterperterCondition {
         }
     }
 
+    /**
+     * Simple uses of the test command are evaluated in the JVM, on the node with the workspace.
+     */
+    @Override
+    protected Boolean evaluateWithoutScript(FilePath ws, EnvVars envVars, BuildListener listener) throws IOException, InterruptedException {
+        if (TestExpression.DISABLED)
+            return null;
+        // EnvVars ignores the case of names, the shell does not
+        TestExpression expression = TestExpression.parse(command, new HashMap<String, String>(envVars));
+        if (expression == null)
+            return null;
+        listener.getLogger().println(Messages.ShellCondition_EvaluatedWithoutShell(expression.getLine()));
+        return expression.needsFiles() ? ws.act(new TestExpression.Evaluation(expression)) : expression.evaluate(null);
+    }
+
+    /**
+     * Scripts with their own interpreter are always launched, and so are scripts for a launcher that does more than
+     * start the process on the node, such as running it in a container.
+     */
+    @Override
+    protected Integer runInWorker(FilePath ws, Launcher launcher, FilePath script, EnvVars envVars, OutputStream out,
+                                  BuildListener listener) throws IOException, InterruptedException {
+        if (!ShellWorker.ENABLED || !useWorker || command.startsWith("#!"))
+            return null;
+        if (launcher.getClass() != Launcher.LocalLauncher.class && launcher.getClass() != Launcher.RemoteLauncher.class)
+            return null;
+        hudson.tasks.Shell.DescriptorImpl shellDesc = Hudson.getInstance().getDescriptorByType(Shell.DescriptorImpl.class);
+        ShellWorker.Result result = ws.act(new ShellWorker.Request(shellDesc.getShellOrDefault(ws.getChannel()), script.getRemote(),
+                                                                   envVars, getTimeout(), new RemoteOutputStream(out)));
+        if (result.isTimedOut())
+            listener.getLogger().println(Messages.CommandInterpreterCondition_TimedOut(getTimeout()));
+        return result.getExitCode();
+    }
+
     protected String getContents() {
         return addCrForNonASCII(fixCrLf(command));
     }
@@ -108,5 +164,13 @@ public class ShellCondition extends CommandInterperterCondition {
         public String getDisplayName() {
             return Messages.ShellCondition_Displayname();
         }
+
+        public long getEstimatedCost() {
+            return COST_PROCESS;
+        }
+
+        public boolean isSideEffectFree() {
+            return false;
+        }
     }
 }
@@ -0,0 +1,371 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2012 by Chris Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.contributed;
+
+import hudson.remoting.VirtualChannel;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.MasterToSlaveFileCallable;
+import jenkins.util.SystemProperties;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Serializable;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Long running shells on a node, that run condition scripts one after another so that each script does not need a new
+ * shell to be started.
+ *
+ * Each script runs in a subshell of the worker, with the environment of the build exported and the workspace as the current
+ * directory, so nothing that a script does to its environment is seen by the next one. The script is sourced with
+ * <code>set -xe</code>, which is what <code>sh -xe script</code> does. After the subshell exits, the worker prints a marker
+ * line with the exit status, which tells where the output of the script ends.
+ *
+ * A worker is only used by one script at a time. Workers that are not in use are kept for
+ * <code>org.jenkins_ci.plugins.run_condition.contributed.ShellWorker.idleSeconds</code> (300) seconds, and at most
+ * <code>org.jenkins_ci.plugins.run_condition.contributed.ShellWorker.maxIdle</code> (8) are kept for each shell. A worker
+ * whose script times out, or whose caller is interrupted because the build was aborted, is killed, together with
+ * everything that it started. The output of the script is copied as it is written, a line at a time.
+ *
+ * Workers are not the same as a launched process in every way, so they are only used when
+ * <code>org.jenkins_ci.plugins.run_condition.contributed.ShellWorker.enabled=true</code> is set as well as asked for by the
+ * condition. A worker is started with {@link ProcessBuilder}, so nothing that a {@link hudson.Launcher} would add to the
+ * process is there, and since the script is sourced, <code>$0</code> is the name of the shell rather than the path of the
+ * script.
+ */
+public final class ShellWorker {
+
+    static final boolean ENABLED = SystemProperties.getBoolean(ShellWorker.class.getName() + ".enabled");
+
+    static final long IDLE_MILLIS = TimeUnit.SECONDS.toMillis(SystemProperties.getLong(ShellWorker.class.getName() + ".idleSeconds", 300L));
+    static final int MAX_IDLE = SystemProperties.getInteger(ShellWorker.class.getName() + ".maxIdle", 8);
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    /** Workers that are not in use, for each shell, most recently used first - guarded by itself */
+    private static final Map<String, Deque<ShellWorker>> IDLE = new HashMap<String, Deque<ShellWorker>>();
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(
+            new NamingThreadFactory(new DaemonThreadFactory(), "Run condition shell worker"));
+
+    /** Copies the output of the scripts, so that the threads that wait for them can be interrupted */
+    private static final ExecutorService READERS = Executors.newCachedThreadPool(
+            new NamingThreadFactory(new DaemonThreadFactory(), "Run condition shell worker output"));
+
+    private static ScheduledFuture<?> reaper;
+
+    private final String shell;
+    private final Process process;
+    private final Writer in;
+    private final BufferedReader out;
+    private final String marker = "RUN_CONDITION_" + UUID.randomUUID().toString().replace("-", "");
+    private long lastUsed;
+    private volatile boolean killed;
+    private volatile boolean timedOut;
+
+    private ShellWorker(final String shell) throws IOException {
+        this.shell = shell;
+        this.process = new ProcessBuilder(shell).redirectErrorStream(true).start();
+        this.in = new OutputStreamWriter(process.getOutputStream(), Charset.defaultCharset());
+        this.out = new BufferedReader(new InputStreamReader(process.getInputStream(), Charset.defaultCharset()));
+    }
+
+    static ShellWorker borrow(final String shell) throws IOException {
+        synchronized (IDLE) {
+            final Deque<ShellWorker> idle = IDLE.get(shell);
+            while (idle != null && !idle.isEmpty()) {
+                final ShellWorker worker = idle.pollFirst();
+                if (worker.process.isAlive()) return worker;
+                worker.kill();
+            }
+        }
+        return new ShellWorker(shell);
+    }
+
+    static void giveBack(final ShellWorker worker) {
+        synchronized (IDLE) {
+            Deque<ShellWorker> idle = IDLE.get(worker.shell);
+            if (idle == null) {
+                idle = new ArrayDeque<ShellWorker>();
+                IDLE.put(worker.shell, idle);
+            }
+            if (idle.size() < MAX_IDLE && worker.process.isAlive()) {
+                worker.lastUsed = System.currentTimeMillis();
+                idle.addFirst(worker);
+                if (reaper == null) {
+                    final long period = Math.max(1000, IDLE_MILLIS / 2);
+                    reaper = TIMER.scheduleWithFixedDelay(ShellWorker::reap, period, period, TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+        }
+        worker.kill();
+    }
+
+    /**
+     * Stop the workers that have not been used for a while.
+     */
+    static void reap() {
+        final long oldest = System.currentTimeMillis() - IDLE_MILLIS;
+        final List<ShellWorker> expired = new ArrayList<ShellWorker>();
+        synchronized (IDLE) {
+            for (Deque<ShellWorker> idle : IDLE.values()) {
+                final Iterator<ShellWorker> workers = idle.descendingIterator();
+                while (workers.hasNext()) {
+                    final ShellWorker worker = workers.next();
+                    if (worker.lastUsed > oldest) break;
+                    workers.remove();
+                    expired.add(worker);
+                }
+            }
+        }
+        for (ShellWorker worker : expired)
+            worker.stop();
+    }
+
+    static int countIdle(final String shell) {
+        synchronized (IDLE) {
+            final Deque<ShellWorker> idle = IDLE.get(shell);
+            return idle == null ? 0 : idle.size();
+        }
+    }
+
+    /**
+     * Run a script, and wait for it to finish. The worker is killed if the thread is interrupted while it waits.
+     *
+     * @param timeout seconds to wait before killing the worker, or 0 to wait for as long as it takes
+     * @param output where the output of the script goes
+     */
+    Result run(final File dir, final String script, final Map<String, String> env, final int timeout, final OutputStream output)
+            throws IOException, InterruptedException {
+        final StringBuilder command = new StringBuilder("(\ncd ").append(quote(dir.getAbsolutePath())).append(" || exit 1\n");
+        for (Map.Entry<String, String> variable : env.entrySet()) {
+            // the shell can not set anything else, nor can sh -xe see it
+            if (NAME.matcher(variable.getKey()).matches())
+                command.append("export ").append(variable.getKey()).append('=').append(quote(variable.getValue())).append('\n');
+        }
+        command.append("set -xe\n. ").append(quote(script)).append("\n) </dev/null 2>&1\n");
+        command.append("printf '\\n%s %d\\n' ").append(marker).append(" $?\n");
+        in.write(command.toString());
+        in.flush();
+        final Future<Result> reading = READERS.submit(() -> readResult(output));
+        final ScheduledFuture<?> killer = timeout > 0 ? TIMER.schedule(this::timeOut, timeout, TimeUnit.SECONDS) : null;
+        try {
+            return reading.get();
+        } catch (InterruptedException e) {
+            // the script must not carry on once nothing waits for it, killing the worker also ends the reading
+            kill();
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        } finally {
+            if (killer != null) killer.cancel(false);
+        }
+    }
+
+    /**
+     * Copy the output of the script, until the marker that the worker prints after it.
+     *
+     * The new line at the end of each line is only written once the next line is read, as the new line before the marker
+     * belongs to the marker.
+     */
+    private Result readResult(final OutputStream output) throws IOException {
+        final Writer copy = new OutputStreamWriter(output, Charset.defaultCharset());
+        final String prefix = marker + ' ';
+        String previous = null;
+        String line;
+        while ((line = readLine()) != null) {
+            if (line.startsWith(prefix) && !killed) {
+                // the marker starts with a new line, in case the output of the script did not end with one
+                if (previous != null && previous.length() != 0) copy.write('\n');
+                copy.flush();
+                return new Result(Integer.parseInt(line.substring(prefix.length()).trim()), false, false);
+            }
+            if (previous != null) copy.write('\n');
+            copy.write(line);
+            copy.flush();
+            previous = line;
+        }
+        if (previous != null) copy.write('\n');
+        copy.flush();
+        // the worker was killed, or the script made it exit
+        return new Result(-1, true, timedOut);
+    }
+
+    /**
+     * @return the next line of output, or null once the worker has stopped
+     */
+    private String readLine() throws IOException {
+        try {
+            return out.readLine();
+        } catch (IOException e) {
+            // killing the worker closes its output
+            if (killed) return null;
+            throw e;
+        }
+    }
+
+    static String quote(final String value) {
+        return '\'' + value.replace("'", "'\\''") + '\'';
+    }
+
+    boolean isAlive() {
+        return process.isAlive();
+    }
+
+    /**
+     * Ask the worker to exit.
+     */
+    void stop() {
+        try {
+            in.close();
+        } catch (IOException e) {
+            kill();
+        }
+    }
+
+    /**
+     * Kill the worker because its script did not finish in time.
+     */
+    private void timeOut() {
+        timedOut = true;
+        kill();
+    }
+
+    /**
+     * Kill the worker, and any script that it is running.
+     */
+    void kill() {
+        killed = true;
+        // the worker first, so that it can not carry on once the script is gone
+        final List<ProcessHandle> descendants = new ArrayList<ProcessHandle>();
+        process.descendants().forEach(descendants::add);
+        process.destroyForcibly();
+        for (ProcessHandle descendant : descendants)
+            descendant.destroyForcibly();
+    }
+
+    public static final class Result implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int exitCode;
+        private final boolean lost;
+        private final boolean timedOut;
+
+        Result(final int exitCode, final boolean lost, final boolean timedOut) {
+            this.exitCode = exitCode;
+            this.lost = lost;
+            this.timedOut = timedOut;
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        /**
+         * @return true if the worker stopped before the script finished, because it was killed or the script made it exit
+         */
+        public boolean isLost() {
+            return lost;
+        }
+
+        /**
+         * @return true if the worker was killed because the script did not finish in time
+         */
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+    }
+
+    /**
+     * Run a script in a worker on the node that has the workspace.
+     */
+    public static final class Request extends MasterToSlaveFileCallable<Result> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String shell;
+        private final String script;
+        private final HashMap<String, String> env;
+        private final int timeout;
+        private final OutputStream output;
+
+        /**
+         * @param shell the shell to start workers with
+         * @param script the path of the script on the node
+         * @param env the environment to run the script with, on top of the environment of the node
+         * @param timeout seconds to wait before killing the script, or 0 to wait for as long as it takes
+         * @param output where the output of the script goes, a {@link hudson.remoting.RemoteOutputStream} for another node
+         */
+        public Request(final String shell, final String script, final Map<String, String> env, final int timeout,
+                       final OutputStream output) {
+            this.shell = shell;
+            this.script = script;
+            this.env = new HashMap<String, String>(env);
+            this.timeout = timeout;
+            this.output = output;
+        }
+
+        @Override
+        public Result invoke(final File workspace, final VirtualChannel channel) throws IOException, InterruptedException {
+            final ShellWorker worker = borrow(shell);
+            Result result = null;
+            try {
+                result = worker.run(workspace, script, env, timeout, output);
+                return result;
+            } finally {
+                if (result != null && !result.isLost()) giveBack(worker);
+                else worker.kill();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,446 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2012 by Chris Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.contributed;
+
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import jenkins.util.SystemProperties;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * A shell script that is only a simple use of the test command, which can be evaluated without starting a shell.
+ *
+ * The script must be a single line (apart from blank lines and comments) made of <code>test ...</code>,
+ * <code>[ ... ]</code>, <code>true</code> or <code>false</code> commands, each optionally negated with <code>!</code>,
+ * and joined with <code>&amp;&amp;</code> or <code>||</code>. The arguments can be plain words, single quoted strings, and
+ * double quoted strings that refer to variables as <code>$NAME</code> or <code>${NAME}</code>. The test can use the
+ * string, integer and file operators that behave the same in every POSIX shell.
+ *
+ * Anything else - other commands, globs, redirection, command substitution, unquoted variables that would be split into
+ * several words, operators that some shells do not support - is left to the shell, by {@link #parse} returning null. So are
+ * variables that are not in the build environment, and variables that the shell sets itself (such as <code>$PWD</code>,
+ * <code>$RANDOM</code> or <code>$HOME</code>), whose value in the shell may not be the one in the build environment.
+ *
+ * Evaluating in the JVM can be switched off with the system property
+ * <code>org.jenkins_ci.plugins.run_condition.contributed.TestExpression.disabled=true</code>.
+ */
+final class TestExpression implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    static final boolean DISABLED = SystemProperties.getBoolean(TestExpression.class.getName() + ".disabled");
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    private static final Pattern INTEGER = Pattern.compile("-?[0-9]{1,18}");
+    private static final Set<String> FILE_OPERATORS = new HashSet<String>(Arrays.asList("-e", "-f", "-d", "-r", "-w", "-x", "-s", "-L", "-h"));
+    private static final Set<String> BINARY_OPERATORS = new HashSet<String>(Arrays.asList("=", "!=", "-eq", "-ne", "-lt", "-le", "-gt", "-ge"));
+    /** Variables that the shell sets, or may set, when it starts or as it runs */
+    private static final Set<String> SHELL_VARIABLES = new HashSet<String>(Arrays.asList("PWD", "OLDPWD", "RANDOM", "SECONDS", "LINENO",
+            "PPID", "SHLVL", "SHELL", "HOME", "USER", "LOGNAME", "HOSTNAME", "IFS", "OPTIND", "OPTARG", "UID", "EUID", "PS1", "PS2", "PS4",
+            "_"));
+    /** Characters that mean something more to the shell, outside of quotes */
+    private static final String SPECIAL = ";<>()`{}*?~\\";
+    private static final String AND = "&&";
+    private static final String OR = "||";
+
+    private final String line;
+    private final Node[] commands;
+    /** The operator before each command, after the first, true for && and false for || */
+    private final boolean[] ands;
+
+    private TestExpression(final String line, final Node[] commands, final boolean[] ands) {
+        this.line = line;
+        this.commands = commands;
+        this.ands = ands;
+    }
+
+    /**
+     * @param script the shell script
+     * @param env the environment that the script would be run with, for expanding variables
+     * @return the expression, or null if the script is not a simple test that can be evaluated without a shell
+     */
+    static TestExpression parse(final String script, final Map<String, String> env) {
+        if (script == null || script.startsWith("#!")) return null;
+        String line = null;
+        for (String scriptLine : script.split("\n")) {
+            final String trimmed = scriptLine.trim();
+            if (trimmed.length() == 0 || trimmed.startsWith("#")) continue;
+            if (line != null) return null;
+            line = trimmed;
+        }
+        if (line == null) return null;
+        final List<Token> tokens = tokenize(line, env);
+        if (tokens == null) return null;
+        final List<Node> commands = new ArrayList<Node>();
+        final List<Boolean> ands = new ArrayList<Boolean>();
+        List<String> words = new ArrayList<String>();
+        for (Token token : tokens) {
+            if (token.operator == null) {
+                words.add(token.word);
+                continue;
+            }
+            final Node command = command(words);
+            if (command == null) return null;
+            commands.add(command);
+            ands.add(AND.equals(token.operator));
+            words = new ArrayList<String>();
+        }
+        final Node last = command(words);
+        if (last == null) return null;
+        commands.add(last);
+        final boolean[] andArray = new boolean[ands.size()];
+        for (int i = 0; i < andArray.length; i++) andArray[i] = ands.get(i);
+        return new TestExpression(line, commands.toArray(new Node[commands.size()]), andArray);
+    }
+
+    String getLine() {
+        return line;
+    }
+
+    /**
+     * @return true if evaluating the expression looks at files, so it has to be done on the node with the workspace
+     */
+    boolean needsFiles() {
+        for (Node command : commands)
+            if (command.needsFiles()) return true;
+        return false;
+    }
+
+    /**
+     * @param dir the directory that relative paths are relative to - the workspace
+     * @return true if the script would exit with 0
+     */
+    boolean evaluate(final File dir) {
+        boolean status = commands[0].evaluate(dir);
+        for (int i = 0; i < ands.length; i++) {
+            if (ands[i] == status) status = commands[i + 1].evaluate(dir);
+        }
+        return status;
+    }
+
+    private static Node command(final List<String> words) {
+        if (words.isEmpty()) return null;
+        if ("!".equals(words.get(0))) return not(command(words.subList(1, words.size())));
+        final String name = words.get(0);
+        final List<String> args = words.subList(1, words.size());
+        if ("true".equals(name) || ":".equals(name)) return new Constant(true);
+        if ("false".equals(name)) return new Constant(false);
+        if ("test".equals(name)) return test(args);
+        if ("[".equals(name) && !args.isEmpty() && "]".equals(args.get(args.size() - 1)))
+            return test(args.subList(0, args.size() - 1));
+        return null;
+    }
+
+    /**
+     * The POSIX rules, which depend on the number of arguments.
+     */
+    private static Node test(final List<String> args) {
+        switch (args.size()) {
+            case 0:
+                return new Constant(false);
+            case 1:
+                return new Constant(args.get(0).length() != 0);
+            case 2:
+                if ("!".equals(args.get(0))) return not(test(args.subList(1, 2)));
+                return unary(args.get(0), args.get(1));
+            case 3:
+                if ("-a".equals(args.get(1)) || "-o".equals(args.get(1))) return null;
+                if (BINARY_OPERATORS.contains(args.get(1))) return binary(args.get(0), args.get(1), args.get(2));
+                if ("!".equals(args.get(0))) return not(test(args.subList(1, 3)));
+                if ("(".equals(args.get(0)) && ")".equals(args.get(2))) return test(args.subList(1, 2));
+                return null;
+            case 4:
+                if ("!".equals(args.get(0))) return not(test(args.subList(1, 4)));
+                if ("(".equals(args.get(0)) && ")".equals(args.get(3))) return test(args.subList(1, 3));
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    private static Node unary(final String operator, final String operand) {
+        if ("-z".equals(operator)) return new Constant(operand.length() == 0);
+        if ("-n".equals(operator)) return new Constant(operand.length() != 0);
+        if (FILE_OPERATORS.contains(operator)) return new FileTest(operator.charAt(1), operand);
+        return null;
+    }
+
+    private static Node binary(final String left, final String operator, final String right) {
+        if ("=".equals(operator)) return new Constant(left.equals(right));
+        if ("!=".equals(operator)) return new Constant(!left.equals(right));
+        // the shell would fail, rather than return false, so leave it to the shell to report
+        if (!INTEGER.matcher(left).matches() || !INTEGER.matcher(right).matches()) return null;
+        final int comparison = Long.compare(Long.parseLong(left), Long.parseLong(right));
+        switch (operator) {
+            case "-eq": return new Constant(comparison == 0);
+            case "-ne": return new Constant(comparison != 0);
+            case "-lt": return new Constant(comparison < 0);
+            case "-le": return new Constant(comparison <= 0);
+            case "-gt": return new Constant(comparison > 0);
+            default: return new Constant(comparison >= 0);
+        }
+    }
+
+    private static Node not(final Node node) {
+        return node == null ? null : new Not(node);
+    }
+
+    /**
+     * Split the line into words and operators, removing quotes and expanding variables as the shell would.
+     */
+    static List<Token> tokenize(final String line, final Map<String, String> env) {
+        final List<Token> tokens = new ArrayList<Token>();
+        StringBuilder word = null;
+        int i = 0;
+        while (i < line.length()) {
+            final char c = line.charAt(i);
+            if (c == ' ' || c == '\t') {
+                if (word != null) tokens.add(new Token(word.toString(), null));
+                word = null;
+                i++;
+            } else if (c == '&' || c == '|') {
+                if (i + 1 == line.length() || line.charAt(i + 1) != c) return null;
+                if (word != null) tokens.add(new Token(word.toString(), null));
+                word = null;
+                tokens.add(new Token(null, c == '&' ? AND : OR));
+                i += 2;
+            } else if (c == '\'') {
+                final int end = line.indexOf('\'', i + 1);
+                if (end < 0) return null;
+                word = append(word, line.substring(i + 1, end));
+                i = end + 1;
+            } else if (c == '"') {
+                word = append(word, "");
+                i++;
+                while (true) {
+                    if (i == line.length()) return null;
+                    final char q = line.charAt(i);
+                    if (q == '"') break;
+                    if (q == '`') return null;
+                    if (q == '\\' && i + 1 < line.length() && "$`\"\\".indexOf(line.charAt(i + 1)) >= 0) {
+                        word.append(line.charAt(i + 1));
+                        i += 2;
+                    } else if (q == '$') {
+                        final int end = variableEnd(line, i);
+                        if (end < 0) return null;
+                        final String value = variable(line, i, end, env);
+                        if (value == null) return null;
+                        word.append(value);
+                        i = end;
+                    } else {
+                        word.append(q);
+                        i++;
+                    }
+                }
+                i++;
+            } else if (c == '$') {
+                final int end = variableEnd(line, i);
+                if (end < 0) return null;
+                final String value = variable(line, i, end, env);
+                // anything else would be split into several words, or none, or expanded as a glob
+                if (value == null || value.length() == 0 || !value.equals(value.trim()) || value.matches(".*[\\s*?\\[].*")) return null;
+                word = append(word, value);
+                i = end;
+            } else if ((c == '[' || c == ']') && word == null) {
+                if (i + 1 < line.length() && line.charAt(i + 1) != ' ' && line.charAt(i + 1) != '\t') return null;
+                tokens.add(new Token(String.valueOf(c), null));
+                i++;
+            } else if (c == '#' && word == null) {
+                break;
+            } else if (SPECIAL.indexOf(c) >= 0 || c == '[' || c == ']') {
+                return null;
+            } else {
+                word = append(word, String.valueOf(c));
+                i++;
+            }
+        }
+        if (word != null) tokens.add(new Token(word.toString(), null));
+        return tokens;
+    }
+
+    private static StringBuilder append(final StringBuilder word, final String text) {
+        return (word == null ? new StringBuilder() : word).append(text);
+    }
+
+    /**
+     * @return the index after a $NAME or ${NAME} reference starting at the index, or -1 for anything else
+     */
+    private static int variableEnd(final String line, final int start) {
+        if (start + 1 < line.length() && line.charAt(start + 1) == '{') {
+            final int end = line.indexOf('}', start + 2);
+            return end >= 0 && NAME.matcher(line.substring(start + 2, end)).matches() ? end + 1 : -1;
+        }
+        int end = start + 1;
+        while (end < line.length() && (Character.isLetterOrDigit(line.charAt(end)) || line.charAt(end) == '_') && line.charAt(end) < 128)
+            end++;
+        return end > start + 1 && NAME.matcher(line.substring(start + 1, end)).matches() ? end : -1;
+    }
+
+    /**
+     * @return the value of the variable, or null if only the shell knows it
+     */
+    private static String variable(final String line, final int start, final int end, final Map<String, String> env) {
+        final String name = line.charAt(start + 1) == '{' ? line.substring(start + 2, end - 1) : line.substring(start + 1, end);
+        if (SHELL_VARIABLES.contains(name) || name.startsWith("BASH")) return null;
+        return env.get(name);
+    }
+
+    static final class Token {
+
+        final String word;
+        final String operator;
+
+        Token(final String word, final String operator) {
+            this.word = word;
+            this.operator = operator;
+        }
+
+    }
+
+    private abstract static class Node implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        abstract boolean evaluate(File dir);
+
+        boolean needsFiles() {
+            return false;
+        }
+
+    }
+
+    private static final class Constant extends Node {
+
+        private static final long serialVersionUID = 1L;
+
+        private final boolean value;
+
+        Constant(final boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        boolean evaluate(final File dir) {
+            return value;
+        }
+
+    }
+
+    private static final class Not extends Node {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Node node;
+
+        Not(final Node node) {
+            this.node = node;
+        }
+
+        @Override
+        boolean evaluate(final File dir) {
+            return !node.evaluate(dir);
+        }
+
+        @Override
+        boolean needsFiles() {
+            return node.needsFiles();
+        }
+
+    }
+
+    private static final class FileTest extends Node {
+
+        private static final long serialVersionUID = 1L;
+
+        private final char operator;
+        private final String path;
+
+        FileTest(final char operator, final String path) {
+            this.operator = operator;
+            this.path = path;
+        }
+
+        @Override
+        boolean evaluate(final File dir) {
+            if (path.length() == 0) return false;
+            final File file = new File(path);
+            final Path target = (file.isAbsolute() || dir == null ? file : new File(dir, path)).toPath();
+            switch (operator) {
+                case 'e': return Files.exists(target);
+                case 'f': return Files.isRegularFile(target);
+                case 'd': return Files.isDirectory(target);
+                case 'r': return Files.isReadable(target);
+                case 'w': return Files.isWritable(target);
+                case 'x': return Files.isExecutable(target);
+                case 's':
+                    try {
+                        return Files.size(target) > 0;
+                    } catch (IOException e) {
+                        return false;
+                    }
+                default: return Files.isSymbolicLink(target);
+            }
+        }
+
+        @Override
+        boolean needsFiles() {
+            return true;
+        }
+
+    }
+
+    /**
+     * Evaluate the expression on the node that has the workspace.
+     */
+    static final class Evaluation extends MasterToSlaveFileCallable<Boolean> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final TestExpression expression;
+
+        Evaluation(final TestExpression expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        public Boolean invoke(final File dir, final VirtualChannel channel) {
+            return expression.evaluate(dir);
+        }
+
+    }
+
+}
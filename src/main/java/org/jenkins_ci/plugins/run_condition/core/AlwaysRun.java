@@ -36,6 +36,11 @@ public final class AlwaysRun extends PrebuildSameAsPerformRunCondition {
     @DataBoundConstructor
     public AlwaysRun() {}
 
+    @Override
+    public boolean isBuildStable() {
+        return true;
+    }
+
     @Override
     public boolean runBuildStep(final AbstractBuild<?, ?> build, final BuildListener listener) {
         return true;
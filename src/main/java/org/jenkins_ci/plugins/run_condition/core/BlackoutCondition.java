@@ -0,0 +1,180 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.core;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.Hudson;
+import hudson.util.FormValidation;
+import jenkins.model.Jenkins;
+import org.jenkins_ci.plugins.run_condition.Messages;
+import org.jenkins_ci.plugins.run_condition.RunCondition;
+import org.jenkins_ci.plugins.run_condition.common.BlackoutCalendar;
+import org.jenkins_ci.plugins.run_condition.common.ZoneIds;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.verb.POST;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+
+/**
+ * Run when the time is in one of the blackout windows listed in a calendar file in JENKINS_HOME - use with Not to skip a step
+ * during the windows.
+ */
+public class BlackoutCondition extends RunCondition {
+
+    private final String file;
+    private final boolean useBuildTime;
+    private String timeZone;
+
+    @DataBoundConstructor
+    public BlackoutCondition(final String file, final boolean useBuildTime) {
+        this.file = Util.fixNull(file).trim();
+        this.useBuildTime = useBuildTime;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public boolean isUseBuildTime() {
+        return useBuildTime;
+    }
+
+    /**
+     * @return the ID of the time zone of the local times in the calendar, or null for the time zone of the Jenkins master
+     */
+    public String getTimeZone() {
+        return timeZone;
+    }
+
+    @DataBoundSetter
+    public void setTimeZone(final String timeZone) {
+        final String zone = Util.fixEmptyAndTrim(timeZone);
+        if (zone != null && !ZoneIds.isValid(zone)) throw new RuntimeException(Messages.timeZone_validation_invalid(zone));
+        this.timeZone = zone;
+    }
+
+    /**
+     * The calendar file is read again when it changes, but a build that has already checked it keeps its answer.
+     */
+    @Override
+    public boolean isBuildStable() {
+        return useBuildTime;
+    }
+
+    @Override
+    public final boolean runPrebuild(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
+        return useBuildTime ? isInBlackout(getTimestampMillis(build), listener) : true;
+    }
+
+    @Override
+    public final boolean runPerform(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
+        return isInBlackout(useBuildTime ? getTimestampMillis(build) : getNowMillis(), listener);
+    }
+
+    protected long getNowMillis() {
+        return System.currentTimeMillis();
+    }
+
+    protected long getTimestampMillis(final AbstractBuild<?, ?> build) {
+        return build.getTimeInMillis();
+    }
+
+    protected Path getHome() {
+        return Hudson.getInstance().getRootDir().toPath();
+    }
+
+    private boolean isInBlackout(final long testTime, final BuildListener listener) throws IOException {
+        final ZoneId zone = ZoneIds.get(timeZone);
+        final BlackoutCalendar calendar = BlackoutCalendar.get(resolve(getHome(), file), zone);
+        final BlackoutCalendar.Window window = calendar.find(testTime);
+        final String time = ZoneIds.formatMinute(testTime, zone);
+        if (window == null) {
+            listener.getLogger().println(Messages.blackoutCondition_console_notInWindow(time, calendar.size(), file));
+            return false;
+        }
+        listener.getLogger().println(Messages.blackoutCondition_console_inWindow(time, window.getSummary(), file));
+        return true;
+    }
+
+    /**
+     * @return the real path of the file, which is a calendar file in JENKINS_HOME once any links have been followed
+     */
+    static Path resolve(final Path home, final String file) throws IOException {
+        final Path root = toRealPath(home.toAbsolutePath().normalize());
+        final Path resolved = toRealPath(root.resolve(file).normalize());
+        // a link in JENKINS_HOME must not lead to a file outside it
+        if (!resolved.startsWith(root)) throw new IOException(Messages.blackoutCondition_validation_outsideHome(file));
+        // only calendar files, so that the errors in the build log never show lines from any other file in JENKINS_HOME
+        if (!BlackoutCalendar.isCalendarFile(resolved)) throw new IOException(Messages.blackoutCondition_validation_extension(file));
+        return resolved;
+    }
+
+    private static Path toRealPath(final Path path) throws IOException {
+        return Files.exists(path) ? path.toRealPath() : path;
+    }
+
+    @Extension
+    public static class BlackoutConditionDescriptor extends RunConditionDescriptor {
+
+        @Override
+        public String getDisplayName() {
+            return Messages.blackoutCondition_displayName();
+        }
+
+        @Override
+        public long getEstimatedCost() {
+            return COST_FILE;
+        }
+
+        @POST
+        public FormValidation doCheckFile(@QueryParameter final String value) {
+            final String file = Util.fixEmptyAndTrim(value);
+            if (file == null) return FormValidation.error(Messages.blackoutCondition_validation_empty());
+            // only administrators may find out what is in JENKINS_HOME
+            if (!Jenkins.get().hasPermission(Jenkins.ADMINISTER)) return FormValidation.ok();
+            try {
+                final Path resolved = resolve(Jenkins.get().getRootDir().toPath(), file);
+                return Files.isRegularFile(resolved) ? FormValidation.ok()
+                        : FormValidation.warning(Messages.blackoutCondition_validation_missing(file));
+            } catch (IOException e) {
+                return FormValidation.error(e.getMessage());
+            }
+        }
+
+        public FormValidation doCheckTimeZone(@QueryParameter final String value) {
+            return ZoneIds.check(value);
+        }
+
+    }
+
+}
@@ -31,7 +31,7 @@ import hudson.model.BuildListener;
 import hudson.util.FormValidation;
 import org.jenkins_ci.plugins.run_condition.Messages;
 import org.jenkins_ci.plugins.run_condition.common.AlwaysPrebuildRunCondition;
-import org.jenkinsci.plugins.tokenmacro.TokenMacro;
+import org.jenkins_ci.plugins.run_condition.common.TokenExpansion;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
 
@@ -53,7 +53,7 @@ public final class BooleanCondition extends AlwaysPrebuildRunCondition {
 
     @Override
     public boolean runPerform(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
-        final String expandedToken = Util.fixEmptyAndTrim(TokenMacro.expandAll(build, listener, token));
+        final String expandedToken = Util.fixEmptyAndTrim(TokenExpansion.expandAll(build, listener, token));
         listener.getLogger().println(Messages.booleanCondition_check(expandedToken, RUN_REGEX.pattern(), token));
         if (expandedToken == null) {
             return false;
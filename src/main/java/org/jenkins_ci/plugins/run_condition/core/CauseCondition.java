@@ -207,6 +207,11 @@ public final class CauseCondition extends AlwaysPrebuildRunCondition {
             return Messages.causeCondition_displayName();
         }
 
+        @Override
+        public long getEstimatedCost() {
+            return COST_TRIVIAL;
+        }
+
         public ListBoxModel doFillBuildCauseItems() {
             ListBoxModel items = new ListBoxModel();
             for (BuildCause cause : BuildCause.values()) {
@@ -0,0 +1,218 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.core;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.scheduler.CronTabList;
+import hudson.scheduler.Hash;
+import hudson.util.FormValidation;
+import org.jenkins_ci.plugins.run_condition.Messages;
+import org.jenkins_ci.plugins.run_condition.RunCondition;
+import org.jenkins_ci.plugins.run_condition.common.ZoneIds;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+import java.time.ZoneId;
+import java.util.Calendar;
+import java.util.Objects;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Run when the time matches a cron spec, in the same syntax as the "Build periodically" trigger.
+ * <p>
+ * The spec is compiled once into the bit sets of a {@link CronTabList}, so a check is a few bit tests - and the result is
+ * kept for the rest of the minute, with the time that is logged, so that checking again within the minute does not need a
+ * {@link Calendar}. H is hashed on the full name of the job, as it is for the trigger. A TZ= line in the
+ * spec takes the place of the configured time zone for the lines after it, as it does for the trigger.
+ */
+public class CronCondition extends RunCondition {
+
+    private static final long MILLIS_PER_MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    private final String spec;
+    private final boolean useBuildTime;
+    private String timeZone;
+    private transient volatile Compiled compiled;
+    private transient volatile CheckedMinute checked;
+
+    @DataBoundConstructor
+    public CronCondition(final String spec, final boolean useBuildTime) {
+        this.spec = Util.fixNull(spec).trim();
+        if (this.spec.isEmpty()) throw new RuntimeException(Messages.cronCondition_validation_empty());
+        this.useBuildTime = useBuildTime;
+        compile(this.spec, null);
+    }
+
+    public String getSpec() {
+        return spec;
+    }
+
+    public boolean isUseBuildTime() {
+        return useBuildTime;
+    }
+
+    /**
+     * @return the ID of the time zone, or null for the time zone of the Jenkins master
+     */
+    public String getTimeZone() {
+        return timeZone;
+    }
+
+    @DataBoundSetter
+    public void setTimeZone(final String timeZone) {
+        final String zone = Util.fixEmptyAndTrim(timeZone);
+        if (zone != null && !ZoneIds.isValid(zone)) throw new RuntimeException(Messages.timeZone_validation_invalid(zone));
+        this.timeZone = zone;
+        this.checked = null;
+    }
+
+    @Override
+    public boolean isBuildStable() {
+        return useBuildTime;
+    }
+
+    @Override
+    public final boolean runPrebuild(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
+        return useBuildTime ? isScheduled(build, getTimestampMillis(build), listener) : true;
+    }
+
+    @Override
+    public final boolean runPerform(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
+        return isScheduled(build, useBuildTime ? getTimestampMillis(build) : getNowMillis(), listener);
+    }
+
+    protected long getNowMillis() {
+        return System.currentTimeMillis();
+    }
+
+    protected long getTimestampMillis(final AbstractBuild<?, ?> build) {
+        return build.getTimeInMillis();
+    }
+
+    /**
+     * @return the name that H is hashed on, or null to use the lowest value of each range
+     */
+    protected String getHashName(final AbstractBuild<?, ?> build) {
+        return build == null ? null : build.getParent().getFullName();
+    }
+
+    private boolean isScheduled(final AbstractBuild<?, ?> build, final long testTime, final BuildListener listener) {
+        final Compiled tabs = getCompiled(getHashName(build));
+        final long minute = Math.floorDiv(testTime, MILLIS_PER_MINUTE);
+        final CheckedMinute last = checked;
+        if (last != null && last.tabs == tabs && last.minute == minute) {
+            listener.getLogger().println(Messages.cronCondition_console_testing(spec, last.time));
+            return last.scheduled;
+        }
+        final ZoneId zone = ZoneIds.get(timeZone);
+        final String time = ZoneIds.formatMinute(testTime, zone);
+        final Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone(zone));
+        calendar.setTimeInMillis(testTime);
+        listener.getLogger().println(Messages.cronCondition_console_testing(spec, time));
+        final boolean scheduled = tabs.tabs.check(calendar);
+        checked = new CheckedMinute(tabs, minute, time, scheduled);
+        return scheduled;
+    }
+
+    private Compiled getCompiled(final String hashName) {
+        Compiled current = compiled;
+        if (current == null || !Objects.equals(current.hashName, hashName)) {
+            current = new Compiled(hashName, compile(spec, hashName));
+            compiled = current;
+        }
+        return current;
+    }
+
+    private static CronTabList compile(final String spec, final String hashName) {
+        try {
+            return CronTabList.create(spec, hashName == null ? null : Hash.from(hashName));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException(Messages.cronCondition_validation_invalid(e.getMessage()), e);
+        }
+    }
+
+    private static final class Compiled {
+
+        private final String hashName;
+        private final CronTabList tabs;
+
+        Compiled(final String hashName, final CronTabList tabs) {
+            this.hashName = hashName;
+            this.tabs = tabs;
+        }
+
+    }
+
+    private static final class CheckedMinute {
+
+        private final Compiled tabs;
+        private final long minute;
+        private final String time;
+        private final boolean scheduled;
+
+        CheckedMinute(final Compiled tabs, final long minute, final String time, final boolean scheduled) {
+            this.tabs = tabs;
+            this.minute = minute;
+            this.time = time;
+            this.scheduled = scheduled;
+        }
+
+    }
+
+    @Extension
+    public static class CronConditionDescriptor extends RunConditionDescriptor {
+
+        @Override
+        public String getDisplayName() {
+            return Messages.cronCondition_displayName();
+        }
+
+        @Override
+        public long getEstimatedCost() {
+            return COST_TRIVIAL;
+        }
+
+        public FormValidation doCheckSpec(@QueryParameter final String value) {
+            if (Util.fixEmptyAndTrim(value) == null) return FormValidation.error(Messages.cronCondition_validation_empty());
+            try {
+                final String warning = CronTabList.create(value.trim(), null).checkSanity();
+                return warning == null ? FormValidation.ok() : FormValidation.warning(warning);
+            } catch (IllegalArgumentException e) {
+                return FormValidation.error(Messages.cronCondition_validation_invalid(e.getMessage()));
+            }
+        }
+
+        public FormValidation doCheckTimeZone(@QueryParameter final String value) {
+            return ZoneIds.check(value);
+        }
+
+    }
+
+}
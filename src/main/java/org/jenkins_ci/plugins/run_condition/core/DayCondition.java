@@ -25,25 +25,52 @@
 package org.jenkins_ci.plugins.run_condition.core;
 
 import hudson.Extension;
+import hudson.Util;
 import hudson.model.AbstractBuild;
 import hudson.model.BuildListener;
 import hudson.model.Describable;
 import hudson.model.Descriptor;
 import hudson.model.Hudson;
+import hudson.util.FormValidation;
 import org.jenkins_ci.plugins.run_condition.Messages;
 import org.jenkins_ci.plugins.run_condition.RunCondition;
+import org.jenkins_ci.plugins.run_condition.common.ZoneIds;
+import org.jenkins_ci.plugins.run_condition.common.ZoneOffsets;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.Stapler;
 
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.temporal.IsoFields;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
-import java.util.TreeMap;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class DayCondition extends RunCondition {
 
+    /** Whether a subclass overrides the deprecated {@link Calendar} hooks, which then give the times to check */
+    private static final ClassValue<Boolean> CALENDAR_HOOKS = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(final Class<?> type) {
+            return Util.isOverridden(DayCondition.class, type, "getNow")
+                    || Util.isOverridden(DayCondition.class, type, "getTimestamp", AbstractBuild.class);
+        }
+    };
+
+    private static final long MILLIS_PER_DAY = TimeUnit.DAYS.toMillis(1);
+
     private final boolean useBuildTime;
     private final DaySelector daySelector;
+    private String timeZone;
+    private transient volatile ZoneOffsets offsets;
+    /** The last day checked, which is good until the next midnight or zone offset change */
+    private transient volatile CheckedDay checked;
 
     @DataBoundConstructor
     public DayCondition(final boolean useBuildTime, final DaySelector daySelector) {
@@ -51,6 +78,22 @@ public class DayCondition extends RunCondition {
         this.daySelector = daySelector;
     }
 
+    /**
+     * @return the ID of the time zone, or null for the time zone of the Jenkins master
+     */
+    public String getTimeZone() {
+        return timeZone;
+    }
+
+    @DataBoundSetter
+    public void setTimeZone(final String timeZone) {
+        final String zone = Util.fixEmptyAndTrim(timeZone);
+        if (zone != null && !ZoneIds.isValid(zone)) throw new RuntimeException(Messages.timeZone_validation_invalid(zone));
+        this.timeZone = zone;
+        this.offsets = null;
+        this.checked = null;
+    }
+
     public boolean isUseBuildTime() {
         return useBuildTime;
     }
@@ -59,26 +102,81 @@ public class DayCondition extends RunCondition {
         return daySelector;
     }
 
+    @Override
+    public boolean isBuildStable() {
+        return useBuildTime;
+    }
+
     @Override
     public final boolean runPrebuild(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
-        return useBuildTime ? isDayEnabled(getTimestamp(build)) : true;
+        return useBuildTime ? isDayEnabled(getTimestampMillis(build)) : true;
     }
 
     @Override
     public final boolean runPerform(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
-        return useBuildTime ? isDayEnabled(getTimestamp(build)) : isDayEnabled(getNow());
+        return useBuildTime ? isDayEnabled(getTimestampMillis(build)) : isDayEnabled(getNowMillis());
+    }
+
+    /**
+     * @return the time to check when the build time is not used
+     */
+    protected long getNowMillis() {
+        return CALENDAR_HOOKS.get(getClass()) ? getNow().getTimeInMillis() : System.currentTimeMillis();
+    }
+
+    /**
+     * @return the time to check when the build time is used
+     */
+    protected long getTimestampMillis(final AbstractBuild<?, ?> build) {
+        return CALENDAR_HOOKS.get(getClass()) ? getTimestamp(build).getTimeInMillis() : build.getTimeInMillis();
     }
 
+    /**
+     * @deprecated override {@link #getNowMillis()}, which does not need a {@link Calendar}
+     */
+    @Deprecated
     protected Calendar getNow() {
         return Calendar.getInstance();
     }
 
+    /**
+     * @deprecated override {@link #getTimestampMillis(AbstractBuild)}, which does not need a {@link Calendar}
+     */
+    @Deprecated
     protected Calendar getTimestamp(final AbstractBuild<?, ?> build) {
         return build.getTimestamp();
     }
 
-    private final boolean isDayEnabled(final Calendar testTime) {
-        return daySelector.isDaySelected(testTime);
+    private boolean isDayEnabled(final long testTime) {
+        final CheckedDay last = checked;
+        if (last != null && testTime >= last.from && testTime < last.until) return last.selected;
+        ZoneOffsets zoneOffsets = offsets;
+        if (zoneOffsets == null) {
+            zoneOffsets = new ZoneOffsets(ZoneIds.get(timeZone));
+            offsets = zoneOffsets;
+        }
+        final Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone(zoneOffsets.getZone()));
+        calendar.setTimeInMillis(testTime);
+        final int offset = zoneOffsets.getOffsetMillis(testTime);
+        final long nextMidnight = (Math.floorDiv(testTime + offset, MILLIS_PER_DAY) + 1) * MILLIS_PER_DAY - offset;
+        final CheckedDay day = new CheckedDay(testTime, Math.min(nextMidnight, zoneOffsets.getNextTransition(testTime)),
+                                              daySelector.isDaySelected(calendar));
+        checked = day;
+        return day.selected;
+    }
+
+    private static final class CheckedDay {
+
+        private final long from;
+        private final long until;
+        private final boolean selected;
+
+        CheckedDay(final long from, final long until, final boolean selected) {
+            this.from = from;
+            this.until = until;
+            this.selected = selected;
+        }
+
     }
 
     private static boolean isWeekend(final Calendar calendar) {
@@ -92,6 +190,14 @@ public class DayCondition extends RunCondition {
         public String getDisplayName() {
             return Messages.dayCondition_displayName();
         }
+
+        @Override
+        public long getEstimatedCost() {
+            return COST_TRIVIAL;
+        }
+        public FormValidation doCheckTimeZone(@QueryParameter final String value) {
+            return ZoneIds.check(value);
+        }
         public List<? extends Descriptor<? extends DaySelector>> getDaySelectors() {
             return Hudson.getInstance().<DaySelector, DaySelector.SelectorDescriptor>getDescriptorList(DaySelector.class);
         }        
@@ -138,8 +244,19 @@ public class DayCondition extends RunCondition {
 
     public static class SelectDays extends DaySelector {
 
+        private static final Logger LOGGER = Logger.getLogger(SelectDays.class.getName());
+        private static final long ANY = -1L;
+        private static final int LAST_DAY_OF_MONTH = 32;
+
         private final ArrayList<Day> days;
-        private transient TreeMap<Integer, Boolean> lookup;
+        private String daysOfMonth;
+        private String weeksOfYear;
+        /** Bit n is set if the day of the week n (Calendar.SUNDAY to Calendar.SATURDAY) is selected */
+        private transient int daysOfWeekMask;
+        /** Bit n is set for day of the month n, and bit 32 for the last day of the month */
+        private transient long daysOfMonthMask = ANY;
+        /** Bit n is set for ISO week of the year n */
+        private transient long weeksOfYearMask = ANY;
 
         @DataBoundConstructor
         public SelectDays(final ArrayList<Day> days) {
@@ -151,22 +268,122 @@ public class DayCondition extends RunCondition {
             return days;
         }
 
+        /**
+         * @return the days of the month, e.g. 1-7 or 1,15,L - or null for any day
+         */
+        public String getDaysOfMonth() {
+            return daysOfMonth;
+        }
+
+        @DataBoundSetter
+        public void setDaysOfMonth(final String daysOfMonth) {
+            final String value = Util.fixEmptyAndTrim(daysOfMonth);
+            daysOfMonthMask = parseDaysOfMonth(value);
+            this.daysOfMonth = value;
+        }
+
+        /**
+         * @return the ISO weeks of the year, e.g. 1-13 - or null for any week
+         */
+        public String getWeeksOfYear() {
+            return weeksOfYear;
+        }
+
+        @DataBoundSetter
+        public void setWeeksOfYear(final String weeksOfYear) {
+            final String value = Util.fixEmptyAndTrim(weeksOfYear);
+            weeksOfYearMask = parseWeeksOfYear(value);
+            this.weeksOfYear = value;
+        }
+
         @Override
         public boolean isDaySelected(final Calendar testDate) {
-            return lookup.get(testDate.get(Calendar.DAY_OF_WEEK));
+            if ((daysOfWeekMask & 1 << testDate.get(Calendar.DAY_OF_WEEK)) == 0) return false;
+            if (daysOfMonthMask == ANY && weeksOfYearMask == ANY) return true;
+            // the ISO date of the instant, as the fields of the Calendar may be in another calendar system, e.g. Buddhist
+            final ZonedDateTime date = Instant.ofEpochMilli(testDate.getTimeInMillis()).atZone(testDate.getTimeZone().toZoneId());
+            if (daysOfMonthMask != ANY) {
+                final int dayOfMonth = date.getDayOfMonth();
+                final boolean last = (daysOfMonthMask & 1L << LAST_DAY_OF_MONTH) != 0
+                        && dayOfMonth == date.toLocalDate().lengthOfMonth();
+                if (!last && (daysOfMonthMask & 1L << dayOfMonth) == 0) return false;
+            }
+            if (weeksOfYearMask != ANY) {
+                final int week = date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR);
+                return (weeksOfYearMask & 1L << week) != 0;
+            }
+            return true;
         }
 
         private void createLookup() {
-            lookup = new TreeMap<Integer, Boolean>();
-            for (Day day : days)
-                lookup.put(day.getDay(), day.isSelected());
+            int mask = 0;
+            if (days != null) {
+                for (Day day : days)
+                    if (day.isSelected() && day.getDay() >= 0 && day.getDay() < Integer.SIZE) mask |= 1 << day.getDay();
+            }
+            daysOfWeekMask = mask;
         }
 
+        /**
+         * A list that is not valid (e.g. edited by hand) is logged and matches any day, rather than failing to load the job.
+         */
         public Object readResolve() {
             createLookup();
+            try {
+                daysOfMonthMask = parseDaysOfMonth(daysOfMonth);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, e.getMessage());
+                daysOfMonthMask = ANY;
+            }
+            try {
+                weeksOfYearMask = parseWeeksOfYear(weeksOfYear);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, e.getMessage());
+                weeksOfYearMask = ANY;
+            }
             return this;
         }
 
+        static long parseDaysOfMonth(final String daysOfMonth) {
+            final long mask = parseMask(daysOfMonth, 31, true);
+            if (mask == 0) throw new RuntimeException(Messages.dayCondition_validation_daysOfMonth(daysOfMonth));
+            return mask;
+        }
+
+        static long parseWeeksOfYear(final String weeksOfYear) {
+            final long mask = parseMask(weeksOfYear, 53, false);
+            if (mask == 0) throw new RuntimeException(Messages.dayCondition_validation_weeksOfYear(weeksOfYear));
+            return mask;
+        }
+
+        /**
+         * @return a bit for each number in a list of numbers and ranges, e.g. 1-7,15 - ANY for no list, or 0 if it is not valid
+         */
+        private static long parseMask(final String list, final int max, final boolean allowLast) {
+            if (list == null) return ANY;
+            long mask = 0;
+            for (final String item : list.split(",")) {
+                final String value = item.trim();
+                if (allowLast && value.equalsIgnoreCase("L")) {
+                    mask |= 1L << LAST_DAY_OF_MONTH;
+                    continue;
+                }
+                final int dash = value.indexOf('-');
+                final int from;
+                final int to;
+                try {
+                    from = Integer.parseInt((dash < 0 ? value : value.substring(0, dash)).trim());
+                    to = dash < 0 ? from : Integer.parseInt(value.substring(dash + 1).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+                if (from < 1 || to > max || from > to) return 0;
+                for (int i = from; i <= to; i++)
+                    mask |= 1L << i;
+            }
+            return mask;
+        }
+
         @Extension(ordinal = -2)
         public static class SelectDaysDescriptor extends SelectorDescriptor {
             @Override
@@ -179,6 +396,14 @@ public class DayCondition extends RunCondition {
             public Day.DayDescriptor getDayDescriptor() {
                 return Hudson.getInstance().getDescriptorByType(Day.DayDescriptor.class);
             }
+            public FormValidation doCheckDaysOfMonth(@QueryParameter final String value) {
+                return parseMask(Util.fixEmptyAndTrim(value), 31, true) == 0
+                        ? FormValidation.error(Messages.dayCondition_validation_daysOfMonth(value)) : FormValidation.ok();
+            }
+            public FormValidation doCheckWeeksOfYear(@QueryParameter final String value) {
+                return parseMask(Util.fixEmptyAndTrim(value), 53, false) == 0
+                        ? FormValidation.error(Messages.dayCondition_validation_weeksOfYear(value)) : FormValidation.ok();
+            }
             public static ArrayList<Day> getAllDays() {
                 final ArrayList<Day> days = new ArrayList<Day>();
                 days.add(new Day(Calendar.MONDAY, false));
@@ -29,18 +29,36 @@ import hudson.model.AbstractBuild;
 import hudson.model.BuildListener;
 import org.jenkins_ci.plugins.run_condition.Messages;
 import org.jenkins_ci.plugins.run_condition.common.AlwaysPrebuildRunCondition;
-import org.jenkinsci.plugins.tokenmacro.TokenMacro;
+import org.jenkins_ci.plugins.run_condition.common.PatternCache;
+import org.jenkins_ci.plugins.run_condition.common.TokenExpansion;
 import org.kohsuke.stapler.DataBoundConstructor;
 
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
 public class ExpressionCondition extends AlwaysPrebuildRunCondition {
 
+    private static final PatternCache PATTERNS = new PatternCache(256);
+
     final String expression;
     final String label;
+    /** Compiled expression, when the expression does not reference any macros that would need expanding for each build */
+    private transient Pattern compiledExpression;
 
     @DataBoundConstructor
     public ExpressionCondition(final String expression, final String label) {
         this.expression = expression;
         this.label = label;
+        this.compiledExpression = precompile(expression);
+    }
+
+    public Object readResolve() {
+        compiledExpression = precompile(expression);
+        return this;
+    }
+
+    public static PatternCache getPatternCache() {
+        return PATTERNS;
     }
 
     public String getLabel() {
@@ -53,10 +71,21 @@ public class ExpressionCondition extends AlwaysPrebuildRunCondition {
 
     @Override
     public boolean runPerform(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
-        final String expandedExpression = TokenMacro.expandAll(build, listener, expression);
-        String expandedLabel = TokenMacro.expandAll(build, listener, label);
+        final String expandedExpression = compiledExpression == null ? TokenExpansion.expandAll(build, listener, expression) : expression;
+        String expandedLabel = TokenExpansion.expandAll(build, listener, label);
         listener.getLogger().println(Messages.expressionCondition_console_args(expandedExpression, expandedLabel));
-        return expandedLabel.matches(expandedExpression);
+        final Pattern pattern = compiledExpression == null ? PATTERNS.get(expandedExpression) : compiledExpression;
+        return pattern.matcher(expandedLabel).matches();
+    }
+
+    private static Pattern precompile(final String expression) {
+        if (expression == null || TokenExpansion.hasMacros(expression)) return null;
+        try {
+            return Pattern.compile(expression);
+        } catch (final PatternSyntaxException pse) {
+            // report it when the condition is evaluated, as before
+            return null;
+        }
     }
 
     @Extension
@@ -0,0 +1,150 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.core;
+
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.Descriptor;
+import hudson.model.Hudson;
+import hudson.util.FormValidation;
+import org.jenkins_ci.plugins.run_condition.Messages;
+import org.jenkins_ci.plugins.run_condition.common.AlwaysPrebuildRunCondition;
+import org.jenkins_ci.plugins.run_condition.common.BaseDirectory;
+import org.jenkins_ci.plugins.run_condition.common.FileContentSearch;
+import org.jenkins_ci.plugins.run_condition.common.TokenExpansion;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+public final class FileContainsCondition extends AlwaysPrebuildRunCondition {
+
+    final String file;
+    final BaseDirectory baseDir;
+    final String pattern;
+    private boolean regex;
+    private long maxBytes;
+
+    @DataBoundConstructor
+    public FileContainsCondition(final String file, final BaseDirectory baseDir, final String pattern) {
+        this.file = file;
+        this.baseDir = baseDir;
+        this.pattern = pattern;
+    }
+
+    public BaseDirectory getBaseDir() {
+        return baseDir;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public boolean isRegex() {
+        return regex;
+    }
+
+    @DataBoundSetter
+    public void setRegex(final boolean regex) {
+        this.regex = regex;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    @DataBoundSetter
+    public void setMaxBytes(final long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+    }
+
+    @Override
+    public boolean runPerform(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
+        // JENKINS_HOME holds the secrets of the controller, which a job must not be able to read
+        if (baseDir instanceof BaseDirectory.JenkinsHome) throw new IOException(Messages.fileContainsCondition_jenkinsHome());
+        final String expandedFile = TokenExpansion.expandAll(build, listener, file);
+        final String expandedPattern = TokenExpansion.expandAll(build, listener, pattern);
+        listener.getLogger().println(Messages.fileContainsCondition_check(expandedFile, expandedPattern));
+        final FilePath directory = baseDir.getBaseDirectory(build);
+        final FileContentSearch.Result result = directory.act(new FileContentSearch(expandedFile, expandedPattern, regex, maxBytes));
+        if (result == FileContentSearch.Result.MISSING)
+            listener.getLogger().println(Messages.fileContainsCondition_missing(expandedFile));
+        return result == FileContentSearch.Result.FOUND;
+    }
+
+    @Extension
+    public static class FileContainsConditionDescriptor extends RunConditionDescriptor {
+
+        @Override
+        public String getDisplayName() {
+            return Messages.fileContainsCondition_displayName();
+        }
+
+        @Override
+        public long getEstimatedCost() {
+            return COST_FILE;
+        }
+
+        /**
+         * All of the base directories but JENKINS_HOME.
+         */
+        public List<? extends Descriptor<? extends BaseDirectory>> getBaseDirectories() {
+            final List<BaseDirectory.BaseDirectoryDescriptor> directories = new ArrayList<BaseDirectory.BaseDirectoryDescriptor>();
+            for (BaseDirectory.BaseDirectoryDescriptor directory
+                    : Hudson.getInstance().<BaseDirectory, BaseDirectory.BaseDirectoryDescriptor>getDescriptorList(BaseDirectory.class))
+                if (directory.clazz != BaseDirectory.JenkinsHome.class) directories.add(directory);
+            return directories;
+        }
+
+        public FormValidation doCheckFile(@QueryParameter final String value) {
+            return FormValidation.validateRequired(value);
+        }
+
+        public FormValidation doCheckPattern(@QueryParameter final String value, @QueryParameter final boolean regex) {
+            if (value == null || value.length() == 0) return FormValidation.validateRequired(value);
+            // a pattern that uses macros can only be checked once it has been expanded for a build
+            if (!regex || TokenExpansion.hasMacros(value)) return FormValidation.ok();
+            try {
+                Pattern.compile(value);
+                return FormValidation.ok();
+            } catch (PatternSyntaxException e) {
+                return FormValidation.error(Messages.fileContainsCondition_validation_invalidRegex(e.getDescription()));
+            }
+        }
+
+    }
+
+}
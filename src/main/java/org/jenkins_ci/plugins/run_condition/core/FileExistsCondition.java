@@ -25,6 +25,7 @@
 package org.jenkins_ci.plugins.run_condition.core;
 
 import hudson.Extension;
+import hudson.FilePath;
 import hudson.model.AbstractBuild;
 import hudson.model.BuildListener;
 import hudson.model.Descriptor;
@@ -33,16 +34,24 @@ import hudson.util.FormValidation;
 import org.jenkins_ci.plugins.run_condition.Messages;
 import org.jenkins_ci.plugins.run_condition.common.AlwaysPrebuildRunCondition;
 import org.jenkins_ci.plugins.run_condition.common.BaseDirectory;
-import org.jenkinsci.plugins.tokenmacro.TokenMacro;
+import org.jenkins_ci.plugins.run_condition.common.EvaluationScope;
+import org.jenkins_ci.plugins.run_condition.common.ExistenceCheck;
+import org.jenkins_ci.plugins.run_condition.common.FileIndex;
+import org.jenkins_ci.plugins.run_condition.common.TokenExpansion;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.jenkinsci.plugins.tokenmacro.MacroEvaluationException;
 import org.kohsuke.stapler.QueryParameter;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 public final class FileExistsCondition extends AlwaysPrebuildRunCondition {
 
     final String file;
     final BaseDirectory baseDir;
+    private boolean useFileIndex;
 
     @DataBoundConstructor
     public FileExistsCondition(final String file, final BaseDirectory baseDir) {
@@ -58,11 +67,50 @@ public final class FileExistsCondition extends AlwaysPrebuildRunCondition {
         return file;
     }
 
+    public boolean isUseFileIndex() {
+        return useFileIndex;
+    }
+
+    @DataBoundSetter
+    public void setUseFileIndex(final boolean useFileIndex) {
+        this.useFileIndex = useFileIndex;
+    }
+
     @Override
     public boolean runPerform(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
-        final String expandedFile = TokenMacro.expandAll(build, listener, file);
+        final String expandedFile = TokenExpansion.expandAll(build, listener, file);
         listener.getLogger().println(Messages.fileExistsCondition_check(expandedFile));
-        return baseDir.getBaseDirectory(build).child(expandedFile).exists();
+        final FilePath directory = baseDir.getBaseDirectory(build);
+        if (useFileIndex && FileIndex.isIndexable(expandedFile))
+            return FileIndex.get(build, directory).exists(expandedFile);
+        final FilePath target = directory.child(expandedFile);
+        final EvaluationScope scope = EvaluationScope.get(build);
+        final Boolean checked = scope == null ? null : scope.getExistence(target);
+        return checked == null ? target.exists() : checked;
+    }
+
+    /**
+     * Check the files of all of the conditions with one call to each node, so that evaluating the conditions afterwards, in
+     * the same {@link EvaluationScope}, does not need to call the node at all.
+     *
+     * Conditions that fail to find their file are skipped here, and report the problem when they are evaluated.
+     */
+    public static void checkAll(final List<FileExistsCondition> conditions, final AbstractBuild<?, ?> build,
+                                final BuildListener listener) throws IOException, InterruptedException {
+        final EvaluationScope scope = EvaluationScope.get(build);
+        if (scope == null) return;
+        final List<FilePath> files = new ArrayList<FilePath>();
+        for (FileExistsCondition condition : conditions) {
+            try {
+                final String expandedFile = TokenExpansion.expand(build, listener, condition.file);
+                if (condition.useFileIndex && FileIndex.isIndexable(expandedFile)) continue;
+                final FilePath directory = condition.baseDir.getBaseDirectory(build);
+                if (directory != null && expandedFile != null) files.add(directory.child(expandedFile));
+            } catch (final MacroEvaluationException | RuntimeException e) {
+                // the condition reports it when it is evaluated
+            }
+        }
+        if (files.size() > 1) ExistenceCheck.checkAll(scope, files);
     }
 
     @Extension
@@ -73,6 +121,11 @@ public final class FileExistsCondition extends AlwaysPrebuildRunCondition {
             return Messages.fileExistsCondition_displayName();
         }
 
+        @Override
+        public long getEstimatedCost() {
+            return COST_FILE;
+        }
+
         public List<? extends Descriptor<? extends BaseDirectory>> getBaseDirectories() {
             return Hudson.getInstance().<BaseDirectory, BaseDirectory.BaseDirectoryDescriptor>getDescriptorList(BaseDirectory.class);
         }
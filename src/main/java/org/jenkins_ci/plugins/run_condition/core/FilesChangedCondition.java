@@ -0,0 +1,132 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.core;
+
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Util;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.Descriptor;
+import hudson.model.Hudson;
+import hudson.model.Run;
+import org.jenkins_ci.plugins.run_condition.Messages;
+import org.jenkins_ci.plugins.run_condition.common.AlwaysPrebuildRunCondition;
+import org.jenkins_ci.plugins.run_condition.common.BaseDirectory;
+import org.jenkins_ci.plugins.run_condition.common.FileManifest;
+import org.jenkins_ci.plugins.run_condition.common.FileManifestAction;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+import java.util.List;
+
+/**
+ * Run if any of the matching files were added, removed or modified since the last successful build.
+ *
+ * The size, last modified time and digest of every matching file are saved with each build that evaluates the condition, and
+ * compared with those saved by the last successful build. If there is nothing to compare with, the files count as changed.
+ */
+public final class FilesChangedCondition extends AlwaysPrebuildRunCondition {
+
+    final String includes;
+    final String excludes;
+    final BaseDirectory baseDir;
+
+    @DataBoundConstructor
+    public FilesChangedCondition(final String includes, final String excludes, final BaseDirectory baseDir) {
+        this.includes = includes;
+        this.excludes = excludes;
+        this.baseDir = baseDir;
+    }
+
+    public BaseDirectory getBaseDir() {
+        return baseDir;
+    }
+
+    public String getIncludes() {
+        return includes;
+    }
+
+    public String getExcludes() {
+        return excludes;
+    }
+
+    @Override
+    public boolean runPerform(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
+        final String key = getManifestKey();
+        final Run<?, ?> lastSuccessful = build.getPreviousSuccessfulBuild();
+        final FileManifest previous = FileManifestAction.get(lastSuccessful, key);
+        final FilePath directory = baseDir.getBaseDirectory(build);
+        final FileManifest current = directory.act(new FileManifest.Scanner(getFixedUpIncludes(), Util.fixEmptyAndTrim(excludes), previous));
+        FileManifestAction.put(build, key, current);
+        if (previous == null) {
+            listener.getLogger().println(Messages.filesChangedCondition_console_noPrevious(current.size()));
+            return true;
+        }
+        final FileManifest.Changes changes = current.changesSince(previous);
+        listener.getLogger().println(Messages.filesChangedCondition_console_changes(changes.getAdded(), changes.getRemoved(),
+                                                                                   changes.getModified(), lastSuccessful.getDisplayName()));
+        return !changes.isEmpty();
+    }
+
+    /**
+     * Identifies the files, so that a manifest is only ever compared with one of the same files.
+     */
+    String getManifestKey() {
+        return baseDir.getClass().getName() + ':' + getFixedUpIncludes() + ':' + Util.fixNull(Util.fixEmptyAndTrim(excludes));
+    }
+
+    private String getFixedUpIncludes() {
+        final String trimmedIncludes = Util.fixEmptyAndTrim(includes);
+        return trimmedIncludes == null ? "**" : trimmedIncludes;
+    }
+
+    @Extension
+    public static class FilesChangedConditionDescriptor extends RunConditionDescriptor {
+
+        @Override
+        public String getDisplayName() {
+            return Messages.filesChangedCondition_displayName();
+        }
+
+        @Override
+        public long getEstimatedCost() {
+            return COST_FILE_SEARCH;
+        }
+
+        /**
+         * Every evaluation saves the manifest that the next build compares with, so it must not be skipped or moved.
+         */
+        @Override
+        public boolean isSideEffectFree() {
+            return false;
+        }
+
+        public List<? extends Descriptor<? extends BaseDirectory>> getBaseDirectories() {
+            return Hudson.getInstance().<BaseDirectory, BaseDirectory.BaseDirectoryDescriptor>getDescriptorList(BaseDirectory.class);
+        }
+
+    }
+
+}
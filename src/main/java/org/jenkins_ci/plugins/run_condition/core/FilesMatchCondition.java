@@ -29,12 +29,18 @@ import hudson.FilePath;
 import hudson.Util;
 import hudson.model.AbstractBuild;
 import hudson.model.BuildListener;
+import hudson.model.Describable;
 import hudson.model.Descriptor;
 import hudson.model.Hudson;
+import hudson.util.FormValidation;
 import org.jenkins_ci.plugins.run_condition.Messages;
 import org.jenkins_ci.plugins.run_condition.common.AlwaysPrebuildRunCondition;
 import org.jenkins_ci.plugins.run_condition.common.BaseDirectory;
+import org.jenkins_ci.plugins.run_condition.common.FileIndex;
+import org.jenkins_ci.plugins.run_condition.common.FileMatchScanner;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
 
 import java.util.List;
 
@@ -43,6 +49,8 @@ public final class FilesMatchCondition extends AlwaysPrebuildRunCondition {
     final String includes;
     final String excludes;
     final BaseDirectory baseDir;
+    private Criterion criterion;
+    private boolean useFileIndex;
 
     @DataBoundConstructor
     public FilesMatchCondition(final String includes, final String excludes, final BaseDirectory baseDir) {
@@ -63,14 +71,46 @@ public final class FilesMatchCondition extends AlwaysPrebuildRunCondition {
         return excludes;
     }
 
+    /**
+     * @return the criterion - any matching file, if none was configured
+     */
+    public Criterion getCriterion() {
+        return criterion == null ? new AnyFile() : criterion;
+    }
+
+    @DataBoundSetter
+    public void setCriterion(final Criterion criterion) {
+        this.criterion = criterion;
+    }
+
+    public boolean isUseFileIndex() {
+        return useFileIndex;
+    }
+
+    @DataBoundSetter
+    public void setUseFileIndex(final boolean useFileIndex) {
+        this.useFileIndex = useFileIndex;
+    }
+
     @Override
     public boolean runPerform(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
+        final Criterion matchCriterion = getCriterion();
         final FilePath directory = baseDir.getBaseDirectory(build);
-        final int matched = directory.exists()
-                ? baseDir.getBaseDirectory(build).list(getFixedUpIncludes(), Util.fixEmptyAndTrim(excludes)).length
-                : 0;
-        listener.getLogger().println(Messages.filesMatchCondition_console_matched(matched));
-        return matched > 0;
+        // the scan stops as soon as the criterion is decided
+        final FileMatchScanner scanner = new FileMatchScanner(getFixedUpIncludes(), Util.fixEmptyAndTrim(excludes),
+                                                              matchCriterion.getCountLimit(), matchCriterion.getSizeLimit());
+        final FileMatchScanner.Result matched = useFileIndex ? scanner.scan(FileIndex.get(build, directory)) : directory.act(scanner);
+        if (matchCriterion instanceof AnyFile) {
+            listener.getLogger().println(matched.isStopped() ? Messages.filesMatchCondition_console_matchedAtLeast(matched.getCount())
+                                                             : Messages.filesMatchCondition_console_matched(matched.getCount()));
+        } else {
+            listener.getLogger().println(matched.isStopped()
+                    ? Messages.filesMatchCondition_console_matchedSizeAtLeast(matched.getCount(), matched.getSize(),
+                                                                              matchCriterion.getDescriptor().getDisplayName())
+                    : Messages.filesMatchCondition_console_matchedSize(matched.getCount(), matched.getSize(),
+                                                                       matchCriterion.getDescriptor().getDisplayName()));
+        }
+        return matchCriterion.isMet(matched.getCount(), matched.getSize());
     }
 
     private String getFixedUpIncludes() {
@@ -86,10 +126,164 @@ public final class FilesMatchCondition extends AlwaysPrebuildRunCondition {
             return Messages.filesMatchCondition_displayName();
         }
 
+        @Override
+        public long getEstimatedCost() {
+            return COST_FILE_SEARCH;
+        }
+
         public List<? extends Descriptor<? extends BaseDirectory>> getBaseDirectories() {
             return Hudson.getInstance().<BaseDirectory, BaseDirectory.BaseDirectoryDescriptor>getDescriptorList(BaseDirectory.class);
         }
 
+        public List<? extends Descriptor<? extends Criterion>> getCriteria() {
+            return Hudson.getInstance().<Criterion, Criterion.CriterionDescriptor>getDescriptorList(Criterion.class);
+        }
+
+    }
+
+    /**
+     * Decides the result from the number and total size of the matched files. The limits tell the scan when it can stop,
+     * because more matches can not change the result.
+     */
+    public static abstract class Criterion implements Describable<Criterion> {
+        public abstract int getCountLimit();
+        public long getSizeLimit() {
+            return Long.MAX_VALUE;
+        }
+        public abstract boolean isMet(int count, long size);
+        public Descriptor<Criterion> getDescriptor() {
+            return (Descriptor) Hudson.getInstance().getDescriptor(getClass());
+        }
+        public static abstract class CriterionDescriptor extends Descriptor<Criterion> {
+        }
+    }
+
+    public static class AnyFile extends Criterion {
+        @DataBoundConstructor public AnyFile() {}
+        public int getCountLimit() {
+            return 1;
+        }
+        public boolean isMet(final int count, final long size) {
+            return count > 0;
+        }
+        @Extension(ordinal = 0)
+        public static class AnyFileDescriptor extends CriterionDescriptor {
+            @Override
+            public String getDisplayName() {
+                return Messages.filesMatchCondition_anyFile();
+            }
+        }
+    }
+
+    public static abstract class CountCriterion extends Criterion {
+        private final int count;
+        protected CountCriterion(final int count) {
+            this.count = count;
+        }
+        public int getCount() {
+            return count;
+        }
+        public static abstract class CountCriterionDescriptor extends CriterionDescriptor {
+            public FormValidation doCheckCount(@QueryParameter final String value) {
+                return FormValidation.validateNonNegativeInteger(value);
+            }
+        }
+    }
+
+    public static class AtLeast extends CountCriterion {
+        @DataBoundConstructor public AtLeast(final int count) {
+            super(count);
+        }
+        public int getCountLimit() {
+            return getCount();
+        }
+        public boolean isMet(final int count, final long size) {
+            return count >= getCount();
+        }
+        @Extension(ordinal = -1)
+        public static class AtLeastDescriptor extends CountCriterionDescriptor {
+            @Override
+            public String getDisplayName() {
+                return Messages.filesMatchCondition_atLeast();
+            }
+        }
+    }
+
+    public static class AtMost extends CountCriterion {
+        @DataBoundConstructor public AtMost(final int count) {
+            super(count);
+        }
+        public int getCountLimit() {
+            return getCount() == Integer.MAX_VALUE ? Integer.MAX_VALUE : getCount() + 1;
+        }
+        public boolean isMet(final int count, final long size) {
+            return count <= getCount();
+        }
+        @Extension(ordinal = -2)
+        public static class AtMostDescriptor extends CountCriterionDescriptor {
+            @Override
+            public String getDisplayName() {
+                return Messages.filesMatchCondition_atMost();
+            }
+        }
+    }
+
+    public static abstract class SizeCriterion extends Criterion {
+        private final long size;
+        protected SizeCriterion(final long size) {
+            this.size = size;
+        }
+        public long getSize() {
+            return size;
+        }
+        public int getCountLimit() {
+            return Integer.MAX_VALUE;
+        }
+        public static abstract class SizeCriterionDescriptor extends CriterionDescriptor {
+            public FormValidation doCheckSize(@QueryParameter final String value) {
+                return FormValidation.validateNonNegativeInteger(value);
+            }
+        }
+    }
+
+    public static class TotalSizeAbove extends SizeCriterion {
+        @DataBoundConstructor public TotalSizeAbove(final long size) {
+            super(size);
+        }
+        @Override
+        public long getSizeLimit() {
+            return getSize() == Long.MAX_VALUE ? Long.MAX_VALUE : getSize() + 1;
+        }
+        public boolean isMet(final int count, final long size) {
+            return size > getSize();
+        }
+        @Extension(ordinal = -3)
+        public static class TotalSizeAboveDescriptor extends SizeCriterionDescriptor {
+            @Override
+            public String getDisplayName() {
+                return Messages.filesMatchCondition_totalSizeAbove();
+            }
+        }
+    }
+
+    public static class TotalSizeBelow extends SizeCriterion {
+        @DataBoundConstructor public TotalSizeBelow(final long size) {
+            super(size);
+        }
+        @Override
+        public long getSizeLimit() {
+            return getSize();
+        }
+        public boolean isMet(final int count, final long size) {
+            return size < getSize();
+        }
+        @Extension(ordinal = -4)
+        public static class TotalSizeBelowDescriptor extends SizeCriterionDescriptor {
+            @Override
+            public String getDisplayName() {
+                return Messages.filesMatchCondition_totalSizeBelow();
+            }
+        }
     }
 
 }
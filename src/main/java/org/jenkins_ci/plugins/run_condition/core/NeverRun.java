@@ -36,6 +36,11 @@ public final class NeverRun extends PrebuildSameAsPerformRunCondition {
     @DataBoundConstructor
     public NeverRun() {}
 
+    @Override
+    public boolean isBuildStable() {
+        return true;
+    }
+
     @Override
     public boolean runBuildStep(final AbstractBuild<?, ?> build, final BuildListener listener) {
         return false;
@@ -103,6 +103,11 @@ public final class NodeCondition extends AlwaysPrebuildRunCondition {
             return Messages.nodeCondition_displayName();
         }
 
+        @Override
+        public long getEstimatedCost() {
+            return COST_TRIVIAL;
+        }
+
         /**
          * Gets the names of all configured slaves, regardless whether they are online.
          * 
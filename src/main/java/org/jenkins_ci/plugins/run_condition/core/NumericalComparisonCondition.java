@@ -33,7 +33,7 @@ import hudson.model.Hudson;
 import hudson.util.FormValidation;
 import org.jenkins_ci.plugins.run_condition.Messages;
 import org.jenkins_ci.plugins.run_condition.common.AlwaysPrebuildRunCondition;
-import org.jenkinsci.plugins.tokenmacro.TokenMacro;
+import org.jenkins_ci.plugins.run_condition.common.TokenExpansion;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
 
@@ -66,9 +66,9 @@ public final class NumericalComparisonCondition extends AlwaysPrebuildRunConditi
 
     @Override
     public boolean runPerform(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
-        final String leftString = TokenMacro.expandAll(build, listener, lhs);
+        final String leftString = TokenExpansion.expandAll(build, listener, lhs);
         final double left = Double.parseDouble(leftString);
-        final String rightString = TokenMacro.expandAll(build, listener, rhs);
+        final String rightString = TokenExpansion.expandAll(build, listener, rhs);
         final double right = Double.parseDouble(rightString);
         listener.getLogger().println(Messages.numericalComparison_console_args(left, comparator.getDescriptor().getDisplayName(), right));
         return comparator.isTrue(left, right);
@@ -87,6 +87,11 @@ public final class StatusCondition extends AlwaysPrebuildRunCondition {
             return Messages.statusCondition_displayName();
         }
 
+        @Override
+        public long getEstimatedCost() {
+            return COST_TRIVIAL;
+        }
+
         public FormValidation doCheckBestResult(@QueryParameter final String worstResult, @QueryParameter final String bestResult) {
             if ((Util.fixEmptyAndTrim(worstResult) == null) || (Util.fixEmptyAndTrim(bestResult) == null)) return FormValidation.ok();
             return resultFormString(worstResult).isWorseOrEqualTo(resultFormString(bestResult))
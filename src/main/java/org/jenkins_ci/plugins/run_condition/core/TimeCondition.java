@@ -25,28 +25,41 @@
 package org.jenkins_ci.plugins.run_condition.core;
 
 import hudson.Extension;
+import hudson.Util;
 import hudson.model.AbstractBuild;
 import hudson.model.BuildListener;
 import hudson.util.FormValidation;
 import org.jenkins_ci.plugins.run_condition.Messages;
 import org.jenkins_ci.plugins.run_condition.RunCondition;
+import org.jenkins_ci.plugins.run_condition.common.TimeWindow;
+import org.jenkins_ci.plugins.run_condition.common.ZoneIds;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 
-import java.text.DateFormat;
 import java.util.Calendar;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class TimeCondition extends RunCondition {
 
+    /** Whether a subclass overrides the deprecated {@link Calendar} hooks, which then give the times to check */
+    private static final ClassValue<Boolean> CALENDAR_HOOKS = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(final Class<?> type) {
+            return Util.isOverridden(TimeCondition.class, type, "getNow")
+                    || Util.isOverridden(TimeCondition.class, type, "getTimestamp", AbstractBuild.class);
+        }
+    };
+
     private static final Pattern TIME = Pattern.compile("^((?:0?\\d)|(?:1\\d)|(?:2[0-3])):([0-5]\\d)$");
-    private static final String TIME_STR_FORMAT = "%02d:%02d";
     private final int earliestHours;
     private final int earliestMinutes;
     private final int latestHours;
     private final int latestMinutes;
     private final boolean useBuildTime;
+    private String timeZone;
+    private transient volatile TimeWindow window;
 
     @DataBoundConstructor
     public TimeCondition(final String earliest, final String latest, final boolean useBuildTime) {
@@ -81,54 +94,101 @@ public class TimeCondition extends RunCondition {
         return useBuildTime;
     }
 
+    /**
+     * @return the ID of the time zone, or null for the time zone of the Jenkins master
+     */
+    public String getTimeZone() {
+        return timeZone;
+    }
+
+    @DataBoundSetter
+    public void setTimeZone(final String timeZone) {
+        final String zone = Util.fixEmptyAndTrim(timeZone);
+        if (zone != null && !ZoneIds.isValid(zone)) throw new RuntimeException(Messages.timeZone_validation_invalid(zone));
+        this.timeZone = zone;
+        this.window = null;
+    }
+
     public String getEarliest() {
-        return String.format(TIME_STR_FORMAT, earliestHours, earliestMinutes);
+        return formatTime(earliestHours, earliestMinutes);
     }
 
     public String getLatest() {
-        return String.format(TIME_STR_FORMAT, latestHours, latestMinutes);
+        return formatTime(latestHours, latestMinutes);
+    }
+
+    @Override
+    public boolean isBuildStable() {
+        return useBuildTime;
     }
 
     @Override
     public final boolean runPrebuild(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
-        return useBuildTime ? isInHours(getTimestamp(build), listener) : true;
+        return useBuildTime ? isInHours(getTimestampMillis(build), listener) : true;
     }
 
     @Override
     public final boolean runPerform(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
-        return useBuildTime ? isInHours(getTimestamp(build), listener) : isInHours(getNow(), listener);
+        return useBuildTime ? isInHours(getTimestampMillis(build), listener) : isInHours(getNowMillis(), listener);
+    }
+
+    /**
+     * @return the time to check when the build time is not used
+     */
+    protected long getNowMillis() {
+        return CALENDAR_HOOKS.get(getClass()) ? getNow().getTimeInMillis() : System.currentTimeMillis();
+    }
+
+    /**
+     * @return the time to check when the build time is used
+     */
+    protected long getTimestampMillis(final AbstractBuild<?, ?> build) {
+        return CALENDAR_HOOKS.get(getClass()) ? getTimestamp(build).getTimeInMillis() : build.getTimeInMillis();
     }
 
+    /**
+     * @deprecated override {@link #getNowMillis()}, which does not need a {@link Calendar}
+     */
+    @Deprecated
     protected Calendar getNow() {
         return Calendar.getInstance();
     }
 
+    /**
+     * @deprecated override {@link #getTimestampMillis(AbstractBuild)}, which does not need a {@link Calendar}
+     */
+    @Deprecated
     protected Calendar getTimestamp(final AbstractBuild<?, ?> build) {
         return build.getTimestamp();
     }
 
-    private final boolean isInHours(final Calendar testTime, final BuildListener listener) {
-        final Calendar lower = (Calendar) testTime.clone();
-        final Calendar upper = (Calendar) lower.clone();
-        setTime(lower, earliestHours, earliestMinutes);
-        setTime(upper, latestHours, latestMinutes);
-        floor(lower);
-        floor(upper);
-        lower.add(Calendar.SECOND, -1);
-        upper.add(Calendar.MINUTE, 1);
-        final String time = DateFormat.getTimeInstance(DateFormat.SHORT).format(testTime.getTime());
-        listener.getLogger().println(Messages.timeCondition_console_testing(getEarliest(), time, getLatest()));
-        return lower.before(testTime) && upper.after(testTime);
+    /**
+     * The window from the earliest to the latest minute, in the configured time zone - or the default time zone when it is
+     * first used.
+     */
+    TimeWindow getWindow() {
+        TimeWindow current = window;
+        if (current == null) {
+            current = new TimeWindow(TimeWindow.minuteOfDay(earliestHours, earliestMinutes),
+                                     TimeWindow.minuteOfDay(latestHours, latestMinutes), ZoneIds.get(timeZone));
+            window = current;
+        }
+        return current;
     }
 
-    private static void floor(final Calendar calendar) {
-        calendar.set(Calendar.SECOND, 0);
-        calendar.set(Calendar.MILLISECOND, 0);
+    private boolean isInHours(final long testTime, final BuildListener listener) {
+        final TimeWindow hours = getWindow();
+        final int minute = hours.minuteOfDay(testTime);
+        listener.getLogger().println(Messages.timeCondition_console_testing(getEarliest(), formatTime(minute / 60, minute % 60), getLatest()));
+        return hours.contains(testTime);
     }
 
-    private static void setTime(final Calendar calendar, final int hours, final int minutes) {
-        calendar.set(Calendar.HOUR_OF_DAY, hours);
-        calendar.set(Calendar.MINUTE, minutes);
+    /**
+     * @return the time as HH:mm, without parsing a format as String.format would, since a time is logged for every check
+     */
+    private static String formatTime(final int hours, final int minutes) {
+        return new String(new char[] {(char) ('0' + hours / 10), (char) ('0' + hours % 10), ':',
+                                      (char) ('0' + minutes / 10), (char) ('0' + minutes % 10)});
     }
 
     public static boolean isTimeValid(final String time) {
@@ -141,12 +201,20 @@ public class TimeCondition extends RunCondition {
         public String getDisplayName() {
             return Messages.timeCondition_displayName();
         }
+
+        @Override
+        public long getEstimatedCost() {
+            return COST_TRIVIAL;
+        }
         public FormValidation doCheckEarliest(@QueryParameter final String value) {
             return checkTime(value);
         }
         public FormValidation doCheckLatest(@QueryParameter final String value) {
             return checkTime(value);
         }
+        public FormValidation doCheckTimeZone(@QueryParameter final String value) {
+            return ZoneIds.check(value);
+        }
         private FormValidation checkTime(final String time) {
             return isTimeValid(time) ? FormValidation.ok()
                     : FormValidation.error(Messages.timeCondition_validation_invalid(time));
@@ -29,7 +29,8 @@ import hudson.model.AbstractBuild;
 import hudson.model.BuildListener;
 import org.jenkins_ci.plugins.run_condition.Messages;
 import org.jenkins_ci.plugins.run_condition.common.AlwaysPrebuildRunCondition;
-import org.jenkinsci.plugins.tokenmacro.TokenMacro;
+import org.jenkins_ci.plugins.run_condition.common.EnvironmentCache;
+import org.jenkins_ci.plugins.run_condition.common.TokenExpansion;
 import org.kohsuke.stapler.DataBoundConstructor;
 
 public class VariableExistsCondition extends AlwaysPrebuildRunCondition {
@@ -47,9 +48,9 @@ public class VariableExistsCondition extends AlwaysPrebuildRunCondition {
     
     @Override
     public boolean runPerform(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
-        final String varName = TokenMacro.expandAll(build, listener, variableName);
+        final String varName = TokenExpansion.expandAll(build, listener, variableName);
         listener.getLogger().println(Messages.variableExistsCondition_check(varName));
-        return build.getEnvironment(listener).containsKey(varName);
+        return EnvironmentCache.getEnvironment(build, listener).containsKey(varName);
     }
 
     @Extension
@@ -30,13 +30,17 @@ import hudson.model.BuildListener;
 import org.jenkins_ci.plugins.run_condition.Messages;
 import org.jenkins_ci.plugins.run_condition.RunCondition;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
 import java.util.ArrayList;
 
 public class And extends RunCondition {
 
     private final ArrayList<ConditionContainer> conditions;
-    
+    private boolean evaluateCheapestFirst;
+    private boolean evaluateInParallel;
+    private transient volatile ConditionPlan plan;
+
     @DataBoundConstructor
     public And(final ArrayList<ConditionContainer> conditions) {
         this.conditions = conditions;
@@ -46,20 +50,48 @@ public class And extends RunCondition {
         return conditions;
     }
 
+    public boolean isEvaluateCheapestFirst() {
+        return evaluateCheapestFirst;
+    }
+
+    @DataBoundSetter
+    public void setEvaluateCheapestFirst(final boolean evaluateCheapestFirst) {
+        this.evaluateCheapestFirst = evaluateCheapestFirst;
+        plan = null;
+    }
+
+    public boolean isEvaluateInParallel() {
+        return evaluateInParallel;
+    }
+
+    @DataBoundSetter
+    public void setEvaluateInParallel(final boolean evaluateInParallel) {
+        this.evaluateInParallel = evaluateInParallel;
+        plan = null;
+    }
+
+    @Override
+    public boolean isBuildStable() {
+        return ConditionContainer.isBuildStable(conditions);
+    }
+
     @Override
     public boolean runPrebuild(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
-        for (ConditionContainer condition : conditions)
-            if (!condition.runPrebuild(build, listener))
-                return false;
-        return true;
+        return getPlan().runPrebuild(build, listener);
     }
 
     @Override
     public boolean runPerform(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
-        for (ConditionContainer condition : conditions)
-            if (!condition.runPerform(build, listener))
-                return false;
-        return true;
+        return getPlan().runPerform(build, listener);
+    }
+
+    ConditionPlan getPlan() {
+        ConditionPlan compiled = plan;
+        if (compiled == null) {
+            compiled = ConditionPlan.compile(this);
+            plan = compiled;
+        }
+        return compiled;
     }
 
     @Extension(ordinal = -1000000)
@@ -60,6 +60,13 @@ public class ConditionContainer implements Describable<ConditionContainer> {
         return condition.runPerform(build, listener);
     }
 
+    static boolean isBuildStable(final List<ConditionContainer> containers) {
+        if (containers != null)
+            for (ConditionContainer container : containers)
+                if (!container.getCondition().isBuildStable()) return false;
+        return true;
+    }
+
     @Extension
     public static class ConditionContainerDescriptor extends Descriptor<ConditionContainer> {
 
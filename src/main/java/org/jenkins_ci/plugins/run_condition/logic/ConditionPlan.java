@@ -0,0 +1,477 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package org.jenkins_ci.plugins.run_condition.logic;
+
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.Items;
+import jenkins.model.Jenkins;
+import org.jenkins_ci.plugins.run_condition.RunCondition;
+import org.jenkins_ci.plugins.run_condition.common.ConditionMetrics;
+import org.jenkins_ci.plugins.run_condition.common.ConditionTraceAction;
+import org.jenkins_ci.plugins.run_condition.common.EvaluationScope;
+import org.jenkins_ci.plugins.run_condition.core.AlwaysRun;
+import org.jenkins_ci.plugins.run_condition.core.FileExistsCondition;
+import org.jenkins_ci.plugins.run_condition.core.NeverRun;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A RunCondition tree compiled into a flat evaluation plan.
+ *
+ * When compiling, the ConditionContainer wrappers are dropped, Always and Never are folded into their parents, double
+ * negations are removed, an And directly inside an And (or an Or inside an Or) is merged into its parent, and repeated
+ * conditions within the same And or Or are only evaluated once. None of this changes the result - although a condition that
+ * would have thrown an exception may no longer be evaluated at all. Conditions whose descriptor says that they are not side
+ * effect free are never dropped, and neither are the conditions before them, which decide whether they are evaluated; a
+ * condition after one with side effects is not merged with a repeat before it either.
+ *
+ * An And or Or can be configured to evaluate its cheapest conditions first. The cost of each condition comes from its
+ * descriptor - an estimate until some evaluations have been timed, then the running average of the observed times. Only
+ * conditions that are side effect free are moved, and never past a condition that is not: those stay where they are
+ * configured, and may create the files or set up the state that the conditions after them check.
+ *
+ * When the evaluation of an And or Or reaches its first File exists condition, the files of that condition and of the File
+ * exists conditions that are evaluated after it are all checked with one call to the node - up to the first condition that is
+ * not side effect free, which may create or delete the files. The answers are forgotten as soon as a condition that is not
+ * side effect free has been evaluated.
+ *
+ * An And or Or can also be configured to evaluate its conditions at the same time - see {@link ParallelEvaluation}.
+ *
+ * And, Or and Not compile themselves the first time that they are evaluated and keep the plan for as long as they live.
+ * Saving the job configuration creates new conditions, so the plan is compiled again after every change.
+ */
+public abstract class ConditionPlan {
+
+    private static final ConditionPlan TRUE = new Constant(true);
+    private static final ConditionPlan FALSE = new Constant(false);
+
+    public static ConditionPlan compile(final RunCondition condition) {
+        return compile(condition, "");
+    }
+
+    /**
+     * @param path the position of the condition in the configured tree, for the {@link ConditionTraceAction}
+     */
+    private static ConditionPlan compile(final RunCondition condition, final String path) {
+        if (condition instanceof AlwaysRun) return TRUE;
+        if (condition instanceof NeverRun) return FALSE;
+        if (condition instanceof Not) return negate(compile(((Not) condition).getCondition(), childPath(path, 0)));
+        if (condition instanceof And) {
+            final And and = (And) condition;
+            return combine(true, and.isEvaluateCheapestFirst(), and.isEvaluateInParallel(), and.getConditions(), path);
+        }
+        if (condition instanceof Or) {
+            final Or or = (Or) condition;
+            return combine(false, or.isEvaluateCheapestFirst(), or.isEvaluateInParallel(), or.getConditions(), path);
+        }
+        return new Leaf(condition, path);
+    }
+
+    private static String childPath(final String path, final int index) {
+        return path.length() == 0 ? String.valueOf(index) : path + '/' + index;
+    }
+
+    private static ConditionPlan negate(final ConditionPlan plan) {
+        if (plan instanceof Constant) return ((Constant) plan).value ? FALSE : TRUE;
+        if (plan instanceof Negate) return ((Negate) plan).plan;
+        return new Negate(plan);
+    }
+
+    /**
+     * @param all true to combine the conditions with a logical and, false to use a logical or
+     * @param cheapestFirst true to evaluate the side effect free conditions in order of cost
+     * @param parallel true to evaluate the conditions at the same time
+     */
+    private static ConditionPlan combine(final boolean all, final boolean cheapestFirst, final boolean parallel,
+                                         final List<ConditionContainer> containers, final String path) {
+        final List<ConditionPlan> plans = new ArrayList<ConditionPlan>();
+        final Set<String> keys = new HashSet<String>();
+        boolean sideEffects = false;
+        if (containers != null) {
+            for (int i = 0; i < containers.size(); i++) {
+                final ConditionPlan plan = compile(containers.get(i).getCondition(), childPath(path, i));
+                final boolean merge = plan instanceof Combination && ((Combination) plan).all == all
+                        && ((Combination) plan).cheapestFirst == cheapestFirst && ((Combination) plan).parallel == parallel;
+                for (ConditionPlan child : merge ? ((Combination) plan).plans : new ConditionPlan[] {plan}) {
+                    if (child instanceof Constant) {
+                        // true does not change the result of an and, false decides it (and the other way round for an or)
+                        if (((Constant) child).value == all) continue;
+                        // the conditions before it must still be evaluated if any of them has side effects
+                        if (!sideEffects) return child;
+                        plans.add(child);
+                        return combination(all, cheapestFirst, parallel, plans);
+                    }
+                    // a condition with side effects runs every time, and may change the result of the conditions after it
+                    if (sideEffects || !child.isSideEffectFree() || keys.add(child.getKey())) {
+                        plans.add(child);
+                        sideEffects |= !child.isSideEffectFree();
+                    }
+                }
+            }
+        }
+        if (plans.isEmpty()) return all ? TRUE : FALSE;
+        if (plans.size() == 1) return plans.get(0);
+        return combination(all, cheapestFirst, parallel, plans);
+    }
+
+    private static Combination combination(final boolean all, final boolean cheapestFirst, final boolean parallel,
+                                           final List<ConditionPlan> plans) {
+        return new Combination(all, cheapestFirst, parallel, plans.toArray(new ConditionPlan[plans.size()]));
+    }
+
+    private String key;
+
+    ConditionPlan() {}
+
+    public abstract boolean runPrebuild(AbstractBuild<?, ?> build, BuildListener listener) throws Exception;
+
+    public abstract boolean runPerform(AbstractBuild<?, ?> build, BuildListener listener) throws Exception;
+
+    /**
+     * @return the expected cost of an evaluation, in nanoseconds
+     */
+    abstract long getCost();
+
+    abstract boolean isSideEffectFree();
+
+    /**
+     * @return true if there is a File exists condition in the plan
+     */
+    boolean hasFileCheck() {
+        return false;
+    }
+
+    /**
+     * @return a string that is the same for two plans if, and only if, they have the same structure and configuration
+     */
+    final String getKey() {
+        if (key == null) key = createKey();
+        return key;
+    }
+
+    abstract String createKey();
+
+    static final class Constant extends ConditionPlan {
+
+        private final boolean value;
+
+        Constant(final boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean runPrebuild(final AbstractBuild<?, ?> build, final BuildListener listener) {
+            return value;
+        }
+
+        @Override
+        public boolean runPerform(final AbstractBuild<?, ?> build, final BuildListener listener) {
+            return value;
+        }
+
+        @Override
+        long getCost() {
+            return 0;
+        }
+
+        @Override
+        boolean isSideEffectFree() {
+            return true;
+        }
+
+        @Override
+        String createKey() {
+            return String.valueOf(value);
+        }
+
+    }
+
+    static final class Leaf extends ConditionPlan {
+
+        private final RunCondition condition;
+        private final String path;
+        private final RunCondition.RunConditionDescriptor descriptor;
+
+        Leaf(final RunCondition condition, final String path) {
+            this.condition = condition;
+            this.path = path;
+            descriptor = Jenkins.getInstanceOrNull() == null ? null : condition.getDescriptor();
+        }
+
+        RunCondition getCondition() {
+            return condition;
+        }
+
+        @Override
+        public boolean runPrebuild(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
+            return evaluate(build, listener, EvaluationScope.Stage.PREBUILD);
+        }
+
+        @Override
+        public boolean runPerform(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
+            return evaluate(build, listener, EvaluationScope.Stage.PERFORM);
+        }
+
+        private boolean evaluate(final AbstractBuild<?, ?> build, final BuildListener listener, final EvaluationScope.Stage stage)
+                                                                                                                    throws Exception {
+            final ConditionTraceAction.Evaluation trace = ConditionTraceAction.start();
+            final long start = System.nanoTime();
+            try {
+                final boolean result = stage == EvaluationScope.Stage.PREBUILD ? condition.runPrebuild(build, listener)
+                                                                               : condition.runPerform(build, listener);
+                final long nanos = System.nanoTime() - start;
+                if (descriptor != null) descriptor.recordEvaluation(nanos);
+                ConditionMetrics.forCondition(condition.getClass()).recordResult(result, nanos);
+                trace.finish(build, condition.getClass(), stage, path, result, null);
+                return result;
+            } catch (final Exception e) {
+                final long nanos = System.nanoTime() - start;
+                if (descriptor != null) descriptor.recordEvaluation(nanos);
+                ConditionMetrics.forCondition(condition.getClass()).recordException(nanos);
+                trace.finish(build, condition.getClass(), stage, path, null, e);
+                throw e;
+            } finally {
+                // the condition may have created or deleted files that have already been checked
+                if (!isSideEffectFree()) {
+                    final EvaluationScope scope = EvaluationScope.get(build);
+                    if (scope != null) scope.clearExistence();
+                }
+            }
+        }
+
+        @Override
+        long getCost() {
+            return descriptor == null ? RunCondition.RunConditionDescriptor.COST_TOKENS : descriptor.getCost();
+        }
+
+        @Override
+        boolean isSideEffectFree() {
+            return descriptor == null || descriptor.isSideEffectFree();
+        }
+
+        @Override
+        boolean hasFileCheck() {
+            return condition instanceof FileExistsCondition;
+        }
+
+        @Override
+        String createKey() {
+            return Items.XSTREAM2.toXML(condition);
+        }
+
+    }
+
+    static final class Negate extends ConditionPlan {
+
+        private final ConditionPlan plan;
+
+        Negate(final ConditionPlan plan) {
+            this.plan = plan;
+        }
+
+        @Override
+        public boolean runPrebuild(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
+            return !plan.runPrebuild(build, listener);
+        }
+
+        @Override
+        public boolean runPerform(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
+            return !plan.runPerform(build, listener);
+        }
+
+        @Override
+        long getCost() {
+            return plan.getCost();
+        }
+
+        @Override
+        boolean isSideEffectFree() {
+            return plan.isSideEffectFree();
+        }
+
+        @Override
+        boolean hasFileCheck() {
+            return plan.hasFileCheck();
+        }
+
+        @Override
+        String createKey() {
+            return "!(" + plan.getKey() + ")";
+        }
+
+    }
+
+    static final class Combination extends ConditionPlan {
+
+        private final boolean all;
+        private final boolean cheapestFirst;
+        private final boolean parallel;
+        private final ConditionPlan[] plans;
+        private final boolean fileCheck;
+
+        Combination(final boolean all, final boolean cheapestFirst, final boolean parallel, final ConditionPlan[] plans) {
+            this.all = all;
+            this.cheapestFirst = cheapestFirst;
+            this.parallel = parallel;
+            this.plans = plans;
+            boolean fileCheck = false;
+            for (ConditionPlan plan : plans)
+                fileCheck |= plan.hasFileCheck();
+            this.fileCheck = fileCheck;
+        }
+
+        @Override
+        public boolean runPrebuild(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
+            if (parallel && ParallelEvaluation.isAvailable())
+                return ParallelEvaluation.evaluate(all, getEvaluationOrder(), true, build, listener);
+            for (ConditionPlan plan : getEvaluationOrder())
+                if (plan.runPrebuild(build, listener) != all)
+                    return !all;
+            return all;
+        }
+
+        @Override
+        public boolean runPerform(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
+            // File exists conditions are always true in prebuild, so the files are only checked here
+            final ConditionPlan[] ordered = getEvaluationOrder();
+            if (parallel && ParallelEvaluation.isAvailable()) {
+                if (fileCheck) checkFiles(ordered, 0, build, listener);
+                return ParallelEvaluation.evaluate(all, ordered, false, build, listener);
+            }
+            boolean filesChecked = !fileCheck;
+            for (int i = 0; i < ordered.length; i++) {
+                if (!filesChecked && ordered[i].hasFileCheck()) {
+                    checkFiles(ordered, i, build, listener);
+                    filesChecked = true;
+                }
+                if (ordered[i].runPerform(build, listener) != all)
+                    return !all;
+                // the answers were forgotten, check the files after it again
+                if (!ordered[i].isSideEffectFree()) filesChecked = !fileCheck;
+            }
+            return all;
+        }
+
+        /**
+         * Check the files of the File exists conditions from the plan at {@code from}, up to the first condition that is not
+         * side effect free.
+         */
+        private static void checkFiles(final ConditionPlan[] ordered, final int from, final AbstractBuild<?, ?> build,
+                                       final BuildListener listener) throws IOException, InterruptedException {
+            final List<FileExistsCondition> conditions = new ArrayList<FileExistsCondition>();
+            for (int i = from; i < ordered.length; i++)
+                if (!collectFileConditions(ordered[i], conditions)) break;
+            if (conditions.size() > 1) FileExistsCondition.checkAll(conditions, build, listener);
+        }
+
+        /**
+         * @return false if a condition that is not side effect free was reached
+         */
+        private static boolean collectFileConditions(final ConditionPlan plan, final List<FileExistsCondition> conditions) {
+            if (plan instanceof Negate) return collectFileConditions(((Negate) plan).plan, conditions);
+            if (plan instanceof Combination) {
+                for (ConditionPlan child : ((Combination) plan).getEvaluationOrder())
+                    if (!collectFileConditions(child, conditions)) return false;
+                return true;
+            }
+            if (!plan.isSideEffectFree()) return false;
+            if (plan.hasFileCheck()) conditions.add((FileExistsCondition) ((Leaf) plan).condition);
+            return true;
+        }
+
+        /**
+         * The plans that are not side effect free in their configured positions, and the side effect free plans between
+         * each pair of them sorted by cost. Plans with the same cost stay in the configured order.
+         *
+         * The costs change as evaluations are observed (possibly by other builds while sorting), so the order is worked out
+         * again for every evaluation from a snapshot of the costs. There are only ever a handful of plans, so an insertion
+         * sort does the job.
+         */
+        ConditionPlan[] getEvaluationOrder() {
+            if (!cheapestFirst) return plans;
+            final ConditionPlan[] ordered = new ConditionPlan[plans.length];
+            final long[] costs = new long[plans.length];
+            int first = 0;
+            for (int i = 0; i < plans.length; i++) {
+                final ConditionPlan plan = plans[i];
+                if (!plan.isSideEffectFree()) {
+                    // nothing is moved past it in either direction
+                    ordered[i] = plan;
+                    first = i + 1;
+                    continue;
+                }
+                final long cost = plan.getCost();
+                int position = i;
+                while (position > first && costs[position - 1] > cost) {
+                    ordered[position] = ordered[position - 1];
+                    costs[position] = costs[position - 1];
+                    position--;
+                }
+                ordered[position] = plan;
+                costs[position] = cost;
+            }
+            return ordered;
+        }
+
+        /**
+         * The sum of the costs of the children - what it costs when nothing short circuits.
+         */
+        @Override
+        long getCost() {
+            long cost = 0;
+            for (ConditionPlan plan : plans)
+                cost += plan.getCost();
+            return cost;
+        }
+
+        @Override
+        boolean isSideEffectFree() {
+            for (ConditionPlan plan : plans)
+                if (!plan.isSideEffectFree()) return false;
+            return true;
+        }
+
+        @Override
+        boolean hasFileCheck() {
+            return fileCheck;
+        }
+
+        @Override
+        String createKey() {
+            final StringBuilder key = new StringBuilder(all ? "&&" : "||").append(parallel ? "*" : "").append(cheapestFirst ? "<(" : "(");
+            for (ConditionPlan plan : plans)
+                key.append(plan.getKey()).append(',');
+            return key.append(')').toString();
+        }
+
+    }
+
+}
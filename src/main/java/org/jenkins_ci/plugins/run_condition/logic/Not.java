@@ -37,7 +37,8 @@ import java.util.List;
 public class Not extends RunCondition {
 
     private final RunCondition condition;
-    
+    private transient volatile ConditionPlan plan;
+
     @DataBoundConstructor
     public Not(final RunCondition condition) {
         this.condition = condition;
@@ -47,14 +48,28 @@ public class Not extends RunCondition {
         return condition;
     }
 
+    @Override
+    public boolean isBuildStable() {
+        return condition.isBuildStable();
+    }
+
     @Override
     public boolean runPrebuild(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
-        return !condition.runPrebuild(build, listener);
+        return getPlan().runPrebuild(build, listener);
     }
 
     @Override
     public boolean runPerform(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
-        return !condition.runPerform(build, listener);
+        return getPlan().runPerform(build, listener);
+    }
+
+    ConditionPlan getPlan() {
+        ConditionPlan compiled = plan;
+        if (compiled == null) {
+            compiled = ConditionPlan.compile(this);
+            plan = compiled;
+        }
+        return compiled;
     }
 
     @Extension(ordinal = -1000002)
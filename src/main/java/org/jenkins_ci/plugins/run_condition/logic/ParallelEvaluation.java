@@ -0,0 +1,192 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.logic;
+
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.StreamBuildListener;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import org.jenkins_ci.plugins.run_condition.Messages;
+import org.springframework.security.core.Authentication;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluates the children of an And or Or at the same time, for conditions that spend most of their time waiting for a node.
+ *
+ * The children run on virtual threads when the JVM has them, otherwise on a small pool of daemon threads. Either way, no more
+ * than {@code org.jenkins_ci.plugins.run_condition.logic.ParallelEvaluation.threads} (default 16) conditions are evaluated at
+ * the same time across all builds. As soon as one child decides the result, the others are cancelled (interrupted).
+ *
+ * Each child logs to its own buffer, and the buffers are copied to the build log in the configured order, so the lines logged
+ * by one condition are never mixed up with the lines of another. A child that was cancelled gets whatever it logged before
+ * then, followed by a line saying that it was cancelled. An exception thrown by a child is only rethrown if none of the other
+ * children decided the result.
+ *
+ * An And or Or that is evaluated by one of the evaluation threads evaluates its children one after the other, so that nested
+ * parallel conditions can not use up all of the threads waiting for each other.
+ */
+final class ParallelEvaluation {
+
+    private static final int THREADS = Math.max(1, SystemProperties.getInteger(ParallelEvaluation.class.getName() + ".threads", 16));
+    private static final Semaphore PERMITS = new Semaphore(THREADS);
+    private static final ExecutorService EXECUTOR = createExecutor();
+    private static final ThreadLocal<Boolean> EVALUATING = new ThreadLocal<Boolean>();
+
+    private ParallelEvaluation() {}
+
+    private static ExecutorService createExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // no virtual threads before Java 21
+            final ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                                                                   new NamingThreadFactory(new DaemonThreadFactory(), "Run condition evaluation"));
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+
+    /**
+     * @return false if the current thread is already evaluating a condition in parallel
+     */
+    static boolean isAvailable() {
+        return EVALUATING.get() == null;
+    }
+
+    /**
+     * @param all true for a logical and, false for a logical or
+     * @param prebuild true to evaluate runPrebuild, false for runPerform
+     */
+    static boolean evaluate(final boolean all, final ConditionPlan[] plans, final boolean prebuild, final AbstractBuild<?, ?> build,
+                            final BuildListener listener) throws Exception {
+        final BlockingQueue<Evaluation> finished = new LinkedBlockingQueue<Evaluation>();
+        final Authentication authentication = Jenkins.getAuthentication2();
+        final Evaluation[] evaluations = new Evaluation[plans.length];
+        final Future<?>[] futures = new Future<?>[plans.length];
+        boolean decided = false;
+        try {
+            for (int i = 0; i < plans.length; i++) {
+                evaluations[i] = new Evaluation(plans[i], prebuild, build, authentication, finished);
+                futures[i] = EXECUTOR.submit(evaluations[i]);
+            }
+            for (int remaining = plans.length; remaining > 0 && !decided; remaining--) {
+                final Evaluation evaluation = finished.take();
+                decided = evaluation.failure == null && evaluation.result != all;
+            }
+        } finally {
+            // a child that has not finished by now is cancelled, even if it finishes before the interrupt reaches it
+            final boolean[] cancelled = new boolean[plans.length];
+            for (int i = 0; i < plans.length; i++) {
+                if (futures[i] == null) continue;
+                cancelled[i] = !evaluations[i].done;
+                futures[i].cancel(true);
+            }
+            for (int i = 0; i < plans.length; i++)
+                if (evaluations[i] != null) evaluations[i].copyLog(listener, i + 1, cancelled[i]);
+        }
+        if (decided) return !all;
+        for (Evaluation evaluation : evaluations)
+            evaluation.rethrow();
+        return all;
+    }
+
+    private static final class Evaluation implements Runnable {
+
+        private final ConditionPlan plan;
+        private final boolean prebuild;
+        private final AbstractBuild<?, ?> build;
+        private final Authentication authentication;
+        private final BlockingQueue<Evaluation> finished;
+        private final ByteArrayOutputStream log = new ByteArrayOutputStream();
+        private boolean result;
+        private Throwable failure;
+        private volatile boolean done;
+
+        Evaluation(final ConditionPlan plan, final boolean prebuild, final AbstractBuild<?, ?> build, final Authentication authentication,
+                   final BlockingQueue<Evaluation> finished) {
+            this.plan = plan;
+            this.prebuild = prebuild;
+            this.build = build;
+            this.authentication = authentication;
+            this.finished = finished;
+        }
+
+        @Override
+        public void run() {
+            EVALUATING.set(Boolean.TRUE);
+            try (ACLContext context = ACL.as2(authentication)) {
+                PERMITS.acquire();
+                try {
+                    final BuildListener listener = new StreamBuildListener(log, StandardCharsets.UTF_8);
+                    result = prebuild ? plan.runPrebuild(build, listener) : plan.runPerform(build, listener);
+                } finally {
+                    PERMITS.release();
+                }
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                EVALUATING.remove();
+                done = true;
+                finished.add(this);
+            }
+        }
+
+        /**
+         * @param position the position of the child in the And or Or, from 1
+         */
+        void copyLog(final BuildListener listener, final int position, final boolean cancelled) {
+            try {
+                // a cancelled child may still be writing, but the buffer is locked while it is copied
+                log.writeTo(listener.getLogger());
+            } catch (IOException e) {
+                // the build log is a PrintStream, which does not throw
+            }
+            if (cancelled) listener.getLogger().println(Messages.logic_parallel_cancelled(position));
+        }
+
+        void rethrow() throws Exception {
+            if (failure instanceof Exception) throw (Exception) failure;
+            if (failure instanceof Error) throw (Error) failure;
+        }
+
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package jmh.benchmarks;
+
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.FreeStyleProject;
+import hudson.model.StreamBuildListener;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.jenkins_ci.plugins.run_condition.RunCondition;
+import org.jenkins_ci.plugins.run_condition.core.AlwaysRun;
+import org.jenkins_ci.plugins.run_condition.core.CauseCondition;
+import org.jenkins_ci.plugins.run_condition.core.DayCondition;
+import org.jenkins_ci.plugins.run_condition.core.ExpressionCondition;
+import org.jenkins_ci.plugins.run_condition.core.NeverRun;
+import org.jenkins_ci.plugins.run_condition.core.NumericalComparisonCondition;
+import org.jenkins_ci.plugins.run_condition.core.StatusCondition;
+import org.jenkins_ci.plugins.run_condition.core.StringsMatchCondition;
+import org.jenkins_ci.plugins.run_condition.core.TimeCondition;
+import org.jenkins_ci.plugins.run_condition.logic.And;
+import org.jenkins_ci.plugins.run_condition.logic.ConditionContainer;
+import org.jenkins_ci.plugins.run_condition.logic.Not;
+import org.jenkins_ci.plugins.run_condition.logic.Or;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * Throughput of runPrebuild and runPerform for each of the shipped conditions.
+ *
+ * The conditions are evaluated against a completed build of a throwaway Jenkins instance, as the token macro based
+ * conditions need a running Jenkins to expand anything. Console output goes to a listener that discards everything.
+ */
+@JmhBenchmark
+public class RunConditionBenchmark {
+
+    public static class JenkinsState extends JmhBenchmarkState {
+
+        AbstractBuild<?, ?> build;
+        BuildListener listener;
+
+        @Override
+        public void setup() throws Exception {
+            final FreeStyleProject project = getJenkins().createProject(FreeStyleProject.class, "benchmark");
+            build = project.scheduleBuild2(0).get();
+            listener = new StreamBuildListener(OutputStream.nullOutputStream(), StandardCharsets.UTF_8);
+        }
+
+    }
+
+    @State(Scope.Benchmark)
+    public static class ConditionState {
+
+        @Param({"stringsMatch", "expression", "numericalComparison", "time", "day", "cause", "status", "and", "or", "not", "tree"})
+        String conditionType;
+
+        RunCondition condition;
+
+        @Setup
+        public void setup() {
+            condition = createCondition(conditionType);
+        }
+
+    }
+
+    @Benchmark
+    public boolean runPrebuild(final JenkinsState jenkins, final ConditionState state) throws Exception {
+        return state.condition.runPrebuild(jenkins.build, jenkins.listener);
+    }
+
+    @Benchmark
+    public boolean runPerform(final JenkinsState jenkins, final ConditionState state) throws Exception {
+        return state.condition.runPerform(jenkins.build, jenkins.listener);
+    }
+
+    static RunCondition createCondition(final String conditionType) {
+        switch (conditionType) {
+            case "stringsMatch":
+                return new StringsMatchCondition("${BUILD_NUMBER}", "1", false);
+            case "expression":
+                return new ExpressionCondition("^[0-9]+$", "${BUILD_NUMBER}");
+            case "numericalComparison":
+                return new NumericalComparisonCondition("${BUILD_NUMBER}", "10", new NumericalComparisonCondition.LessThan());
+            case "time":
+                return new TimeCondition("00:00", "23:59", false);
+            case "day":
+                return new DayCondition(false, new DayCondition.SelectDays(DayCondition.SelectDays.SelectDaysDescriptor.getAllDays()));
+            case "cause":
+                return new CauseCondition("USER_CAUSE", false);
+            case "status":
+                return new StatusCondition("FAILURE", "SUCCESS");
+            case "and":
+                return new And(containers(new StatusCondition("FAILURE", "SUCCESS"), new StringsMatchCondition("${BUILD_NUMBER}", "1", false),
+                                          new AlwaysRun()));
+            case "or":
+                return new Or(containers(new NeverRun(), new CauseCondition("USER_CAUSE", false),
+                                         new ExpressionCondition("^[0-9]+$", "${BUILD_NUMBER}")));
+            case "not":
+                return new Not(new Not(new StatusCondition("FAILURE", "SUCCESS")));
+            case "tree":
+                return new And(containers(
+                        new Or(containers(new NeverRun(), new TimeCondition("00:00", "23:59", false))),
+                        new Not(new CauseCondition("USER_CAUSE", true)),
+                        new And(containers(new StatusCondition("FAILURE", "SUCCESS"),
+                                           new NumericalComparisonCondition("${BUILD_NUMBER}", "10",
+                                                                            new NumericalComparisonCondition.LessThan())))));
+            default:
+                throw new IllegalArgumentException(conditionType);
+        }
+    }
+
+    private static ArrayList<ConditionContainer> containers(final RunCondition... conditions) {
+        final ArrayList<ConditionContainer> containers = new ArrayList<>();
+        for (RunCondition condition : conditions)
+            containers.add(new ConditionContainer(condition));
+        return containers;
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jmh.benchmarks;
+
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.jenkins_ci.plugins.run_condition.common.TimeWindow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.ZoneId;
+import java.util.Calendar;
+
+/**
+ * Checking a time against a window of the day, with the {@link TimeWindow} that TimeCondition uses, and with the Calendar
+ * arithmetic that it used to do.
+ *
+ * Run with the GC profiler that {@link jmh.BenchmarkRunner} adds - <code>gc.alloc.rate.norm</code> for
+ * <code>timeWindow</code> should be 0 bytes per operation.
+ */
+@JmhBenchmark
+public class TimeWindowBenchmark {
+
+    @State(Scope.Thread)
+    public static class WindowState {
+
+        @Param({"daytime", "overnight"})
+        String window;
+
+        TimeWindow timeWindow;
+        int earliestHours;
+        int latestHours;
+        long now;
+
+        @Setup
+        public void setup() {
+            earliestHours = "daytime".equals(window) ? 9 : 22;
+            latestHours = "daytime".equals(window) ? 18 : 4;
+            timeWindow = new TimeWindow(TimeWindow.minuteOfDay(earliestHours, 0), TimeWindow.minuteOfDay(latestHours, 30),
+                                        ZoneId.systemDefault());
+            now = System.currentTimeMillis();
+        }
+
+        long next() {
+            // a minute later each time, so every minute of the day is checked
+            now += 60 * 1000;
+            return now;
+        }
+
+    }
+
+    @Benchmark
+    public boolean timeWindow(final WindowState state) {
+        return state.timeWindow.contains(state.next());
+    }
+
+    @Benchmark
+    public boolean calendar(final WindowState state) {
+        final Calendar testTime = Calendar.getInstance();
+        testTime.setTimeInMillis(state.next());
+        final Calendar lower = (Calendar) testTime.clone();
+        final Calendar upper = (Calendar) lower.clone();
+        lower.set(Calendar.HOUR_OF_DAY, state.earliestHours);
+        lower.set(Calendar.MINUTE, 0);
+        upper.set(Calendar.HOUR_OF_DAY, state.latestHours);
+        upper.set(Calendar.MINUTE, 30);
+        lower.set(Calendar.SECOND, 0);
+        lower.set(Calendar.MILLISECOND, 0);
+        upper.set(Calendar.SECOND, 0);
+        upper.set(Calendar.MILLISECOND, 0);
+        lower.add(Calendar.SECOND, -1);
+        upper.add(Calendar.MINUTE, 1);
+        return lower.before(testTime) && upper.after(testTime);
+    }
+
+}
@@ -0,0 +1,216 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import org.jenkins_ci.plugins.run_condition.Messages;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BlackoutCalendarTest {
+
+    private static final ZoneId LONDON = ZoneId.of("Europe/London");
+
+    @TempDir
+    Path base;
+
+    @Test
+    void testCsv() throws Exception {
+        final BlackoutCalendar calendar = parse(false, "# release freezes\n"
+                                                       + "2024-12-23,2025-01-02,Christmas freeze\n"
+                                                       + "2024-11-29T18:00, 2024-12-02T06:00\n"
+                                                       + "2024-06-01T10:00Z,2024-06-01T11:00Z,maintenance, all services\n");
+        assertEquals(3, calendar.size());
+        assertNull(calendar.find(millis(2024, 12, 22, 23, 59)));
+        assertEquals("Christmas freeze", calendar.find(millis(2024, 12, 23, 0, 0)).getSummary());
+        // the end date is included
+        assertNotNull(calendar.find(millis(2025, 1, 2, 23, 59)));
+        assertNull(calendar.find(millis(2025, 1, 3, 0, 0)));
+        assertNotNull(calendar.find(millis(2024, 11, 30, 12, 0)));
+        assertNull(calendar.find(millis(2024, 12, 2, 6, 0)));
+        assertEquals("maintenance, all services", calendar.find(millis(2024, 6, 1, 11, 30)).getSummary());
+        assertNull(calendar.find(millis(2024, 6, 1, 12, 0)));
+    }
+
+    @Test
+    void testICalendar() throws Exception {
+        final BlackoutCalendar calendar = parse(true, "BEGIN:VCALENDAR\r\n"
+                                                      + "BEGIN:VEVENT\r\n"
+                                                      + "DTSTART;VALUE=DATE:20241225\r\n"
+                                                      + "SUMMARY:Christmas\\, and\r\n"
+                                                      + "  Boxing Day\r\n"
+                                                      + "DTEND;VALUE=DATE:20241227\r\n"
+                                                      + "END:VEVENT\r\n"
+                                                      + "BEGIN:VEVENT\r\n"
+                                                      + "DTSTART;TZID=America/New_York:20240704T090000\r\n"
+                                                      + "DURATION:PT8H\r\n"
+                                                      + "END:VEVENT\r\n"
+                                                      + "BEGIN:VEVENT\r\n"
+                                                      + "DTSTART:20240301T120000Z\r\n"
+                                                      + "DTEND:20240301T130000Z\r\n"
+                                                      + "END:VEVENT\r\n"
+                                                      + "BEGIN:VEVENT\r\n"
+                                                      + "DTSTART;VALUE=DATE:20240101\r\n"
+                                                      + "END:VEVENT\r\n"
+                                                      + "END:VCALENDAR\r\n");
+        assertEquals(4, calendar.size());
+        assertEquals("Christmas, and Boxing Day", calendar.find(millis(2024, 12, 26, 23, 59)).getSummary());
+        assertNull(calendar.find(millis(2024, 12, 27, 0, 0)));
+        final long independenceDay = ZonedDateTime.of(2024, 7, 4, 9, 0, 0, 0, ZoneId.of("America/New_York")).toInstant().toEpochMilli();
+        assertNotNull(calendar.find(independenceDay));
+        assertNull(calendar.find(independenceDay - 1));
+        assertNull(calendar.find(independenceDay + 8 * 60 * 60 * 1000L));
+        // London is on GMT in March
+        assertNotNull(calendar.find(millis(2024, 3, 1, 12, 30)));
+        assertNotNull(calendar.find(millis(2024, 1, 1, 23, 59)));
+        assertNull(calendar.find(millis(2024, 1, 2, 0, 0)));
+    }
+
+    @Test
+    void testOverlappingWindows() throws Exception {
+        // a long window that starts first, covering short ones that start later
+        final StringBuilder csv = new StringBuilder("2024-01-01T00:00,2024-12-31T00:00,year\n");
+        for (int month = 1; month <= 12; month++) {
+            csv.append(String.format("2025-%02d-01T00:00,2025-%02d-01T01:00,month %d%n", month, month, month));
+        }
+        final BlackoutCalendar calendar = parse(false, csv.toString());
+        assertEquals("year", calendar.find(millis(2024, 7, 1, 0, 0)).getSummary());
+        assertEquals("month 7", calendar.find(millis(2025, 7, 1, 0, 30)).getSummary());
+        assertNull(calendar.find(millis(2025, 7, 1, 1, 0)));
+        assertNull(calendar.find(millis(2023, 7, 1, 0, 0)));
+    }
+
+    @Test
+    void testFindMatchesLinearScan() throws Exception {
+        final StringBuilder csv = new StringBuilder();
+        final List<long[]> windows = new ArrayList<>();
+        final Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            final long start = random.nextInt(100000);
+            final long end = start + random.nextInt(i % 10 == 0 ? 20000 : 200);
+            windows.add(new long[] {start * 60000, end * 60000});
+            csv.append(String.format("%s,%s%n", Instant.ofEpochMilli(start * 60000).toString(),
+                                     Instant.ofEpochMilli(end * 60000).toString()));
+        }
+        final BlackoutCalendar calendar = parse(false, csv.toString());
+        for (long minute = -10; minute < 130000; minute += 7) {
+            final long time = minute * 60000;
+            boolean expected = false;
+            for (final long[] window : windows) expected |= time >= window[0] && time < window[1];
+            assertEquals(expected, calendar.find(time) != null, Long.toString(minute));
+        }
+    }
+
+    @Test
+    void testInvalid() {
+        assertThrows(IOException.class, () -> parse(false, "2024-12-23\n"));
+        assertThrows(IOException.class, () -> parse(false, "2024-12-23,tomorrow\n"));
+        assertThrows(IOException.class, () -> parse(false, "2024-12-23,2024-12-01\n"));
+        assertThrows(IOException.class, () -> parse(true, "BEGIN:VEVENT\nDTSTART:20240101T000000Z\nRRULE:FREQ=WEEKLY\nEND:VEVENT\n"));
+        assertThrows(IOException.class, () -> parse(true, "BEGIN:VEVENT\nSUMMARY:no start\nEND:VEVENT\n"));
+    }
+
+    @Test
+    void testInvalidLineIsNotShown() {
+        final IOException csv = assertThrows(IOException.class, () -> parse(false, "# header\nsecret=value\n"));
+        assertEquals(Messages.blackoutCalendar_invalidLine(2), csv.getMessage());
+        assertNull(csv.getCause());
+        final IOException iCalendar = assertThrows(IOException.class, () -> parse(true, "BEGIN:VEVENT\nDTSTART:secret\nEND:VEVENT\n"));
+        assertEquals(Messages.blackoutCalendar_invalidLine(2), iCalendar.getMessage());
+        assertNull(iCalendar.getCause());
+    }
+
+    @Test
+    void testReloadedOnlyWhenChanged() throws Exception {
+        final Path file = base.resolve("freeze.csv");
+        Files.write(file, "2024-12-23,2025-01-02\n".getBytes(StandardCharsets.UTF_8));
+        final BlackoutCalendar first = BlackoutCalendar.get(file);
+        assertSame(first, BlackoutCalendar.get(file));
+        assertEquals(1, first.size());
+        Files.write(file, "2024-12-23,2025-01-02\n2025-04-18,2025-04-21\n".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 2000));
+        final BlackoutCalendar second = BlackoutCalendar.get(file);
+        assertEquals(2, second.size());
+        assertSame(second, BlackoutCalendar.get(file));
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsDropped() throws Exception {
+        final Path first = base.resolve("0.csv");
+        Files.write(first, "2024-12-23,2025-01-02\n".getBytes(StandardCharsets.UTF_8));
+        final BlackoutCalendar calendar = BlackoutCalendar.get(first);
+        for (int i = 1; i <= BlackoutCalendar.MAX_LOADED; i++) {
+            final Path file = base.resolve(i + ".csv");
+            Files.write(file, "2024-12-23,2025-01-02\n".getBytes(StandardCharsets.UTF_8));
+            BlackoutCalendar.get(file);
+        }
+        assertEquals(BlackoutCalendar.MAX_LOADED, BlackoutCalendar.loadedCount());
+        assertNotSame(calendar, BlackoutCalendar.get(first));
+    }
+
+    @Test
+    void testLoadedPerTimeZone() throws Exception {
+        final Path file = base.resolve("freeze.csv");
+        Files.write(file, "2024-12-23T09:00,2024-12-23T17:00\n".getBytes(StandardCharsets.UTF_8));
+        final BlackoutCalendar london = BlackoutCalendar.get(file, LONDON);
+        final BlackoutCalendar utc = BlackoutCalendar.get(file, ZoneId.of("UTC"));
+        final BlackoutCalendar newYork = BlackoutCalendar.get(file, ZoneId.of("America/New_York"));
+        assertSame(london, BlackoutCalendar.get(file, LONDON));
+        assertEquals(millis(2024, 12, 23, 9, 0), london.find(millis(2024, 12, 23, 9, 0)).getStart());
+        // London is on UTC in December
+        assertNotNull(utc.find(millis(2024, 12, 23, 9, 0)));
+        assertNull(newYork.find(millis(2024, 12, 23, 9, 0)));
+        assertNotNull(newYork.find(millis(2024, 12, 23, 14, 0)));
+    }
+
+    private static BlackoutCalendar parse(final boolean iCalendar, final String contents) throws IOException {
+        return new BlackoutCalendar(BlackoutCalendar.parse(new StringReader(contents), iCalendar, LONDON), null, 0);
+    }
+
+    private static long millis(final int year, final int month, final int day, final int hours, final int minutes) {
+        return ZonedDateTime.of(year, month, day, hours, minutes, 0, 0, LONDON).toInstant().toEpochMilli();
+    }
+
+}
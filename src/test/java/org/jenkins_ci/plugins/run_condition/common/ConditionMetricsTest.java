@@ -0,0 +1,90 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import net.sf.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ConditionMetricsTest {
+
+    @Test
+    void testCounts() {
+        final ConditionMetrics.Metrics metrics = new ConditionMetrics.Metrics("test");
+        metrics.recordResult(true, 10);
+        metrics.recordResult(true, 20);
+        metrics.recordResult(false, 30);
+        metrics.recordException(40);
+        assertEquals(2, metrics.getTrueCount());
+        assertEquals(1, metrics.getFalseCount());
+        assertEquals(1, metrics.getExceptionCount());
+        assertEquals(4, metrics.getCount());
+        assertEquals(100, metrics.getTotalNanos());
+        assertEquals(25, metrics.getMeanNanos());
+        assertEquals(40, metrics.getMaxNanos());
+    }
+
+    @Test
+    void testCacheHitsAreNotEvaluations() {
+        final ConditionMetrics.Metrics metrics = new ConditionMetrics.Metrics("test");
+        metrics.recordResult(true, 1000);
+        metrics.recordCacheHit();
+        metrics.recordCacheHit();
+        assertEquals(2, metrics.getCacheHitCount());
+        assertEquals(1, metrics.getCount());
+        assertEquals(1000, metrics.getMeanNanos());
+        assertEquals(1000, metrics.getPercentileNanos(0));
+    }
+
+    @Test
+    void testPercentilesAreBucketUpperBounds() {
+        final ConditionMetrics.Metrics metrics = new ConditionMetrics.Metrics("test");
+        assertEquals(0, metrics.getPercentileNanos(50));
+        for (int i = 0; i < 99; i++)
+            metrics.recordResult(true, 100);
+        metrics.recordResult(true, 5000);
+        // 100 is in the bucket [64, 128)
+        assertEquals(127, metrics.getPercentileNanos(50));
+        assertEquals(127, metrics.getPercentileNanos(99));
+        assertEquals(5000, metrics.getPercentileNanos(100));
+    }
+
+    @Test
+    void testJSON() {
+        ConditionMetrics.reset();
+        ConditionMetrics.forCondition(String.class).recordResult(false, 3);
+        assertSame(ConditionMetrics.forCondition(String.class), ConditionMetrics.getConditions().get(0));
+        final JSONObject json = ConditionMetrics.toJSON();
+        final JSONObject condition = json.getJSONArray("conditions").getJSONObject(0);
+        assertEquals(String.class.getName(), condition.getString("name"));
+        assertEquals(1, condition.getLong("false"));
+        assertEquals(1, condition.getJSONObject("histogram").getLong("4"));
+        assertEquals(0, json.getJSONArray("runners").size());
+        ConditionMetrics.reset();
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import hudson.model.AbstractBuild;
+import net.sf.json.JSONObject;
+import org.easymock.EasyMock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConditionTraceActionTest {
+
+    private final ConditionTraceAction action = new ConditionTraceAction();
+    private final AbstractBuild<?, ?> build = EasyMock.createNiceMock(AbstractBuild.class);
+
+    @BeforeEach
+    void setUp() {
+        EasyMock.expect(build.getAction(ConditionTraceAction.class)).andReturn(action).anyTimes();
+        EasyMock.replay(build);
+    }
+
+    @Test
+    void testRecord() {
+        final ConditionTraceAction.Evaluation evaluation = ConditionTraceAction.start();
+        ConditionTraceAction.recordInput("${FOO}");
+        evaluation.finish(build, String.class, EvaluationScope.Stage.PERFORM, "1/0", true, null);
+        assertEquals(1, action.getRecords().size());
+        final JSONObject record = JSONObject.fromObject(action.getRecords().get(0));
+        assertEquals(String.class.getName(), record.getString("t"));
+        assertEquals("PERFORM", record.getString("s"));
+        assertEquals("1/0", record.getString("p"));
+        assertEquals("${FOO}", record.getJSONArray("i").getString(0));
+        assertTrue(record.getBoolean("r"));
+        assertFalse(record.has("e"));
+        assertTrue(record.getLong("n") >= 0);
+    }
+
+    @Test
+    void testInputsBelongToInnermostEvaluation() {
+        final ConditionTraceAction.Evaluation outer = ConditionTraceAction.start();
+        final ConditionTraceAction.Evaluation inner = ConditionTraceAction.start();
+        ConditionTraceAction.recordInput("inner");
+        inner.finish(build, String.class, EvaluationScope.Stage.PREBUILD, "0", null, new IOException());
+        ConditionTraceAction.recordInput("outer");
+        outer.finish(build, Object.class, EvaluationScope.Stage.PREBUILD, "", false, null);
+        final JSONObject innerRecord = JSONObject.fromObject(action.getRecords().get(0));
+        assertEquals("inner", innerRecord.getJSONArray("i").getString(0));
+        assertEquals(IOException.class.getName(), innerRecord.getString("e"));
+        assertFalse(innerRecord.has("r"));
+        final JSONObject outerRecord = JSONObject.fromObject(action.getRecords().get(1));
+        assertEquals(1, outerRecord.getJSONArray("i").size());
+        assertEquals("outer", outerRecord.getJSONArray("i").getString(0));
+    }
+
+    @Test
+    void testOnlyLastRecordsAreKept() {
+        for (int i = 0; i < 5; i++)
+            action.add(Integer.toString(i), 3);
+        assertEquals(Arrays.asList("2", "3", "4"), action.getRecords());
+    }
+
+    @Test
+    void testInputIsIgnoredOutsideEvaluation() {
+        ConditionTraceAction.recordInput("nothing to record it");
+        assertTrue(action.getRecords().isEmpty());
+    }
+
+}
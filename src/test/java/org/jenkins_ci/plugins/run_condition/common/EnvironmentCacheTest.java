@@ -0,0 +1,138 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import hudson.EnvVars;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.EnvironmentContributingAction;
+import org.easymock.EasyMock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.easymock.EasyMock.expect;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EnvironmentCacheTest {
+
+    private final AbstractBuild<?, ?> build = EasyMock.createMock(AbstractBuild.class);
+    private final BuildListener listener = EasyMock.createNiceMock(BuildListener.class);
+    private final EnvVars environment = new EnvVars("FOO", "1");
+    private final Map<String, String> variables = new HashMap<String, String>();
+    private final List<EnvironmentContributingAction> actions = new ArrayList<EnvironmentContributingAction>();
+    private int computed;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        expect(build.getEnvironment(listener)).andAnswer(() -> {
+            computed++;
+            return new EnvVars(environment);
+        }).anyTimes();
+        expect(build.getBuildVariables()).andAnswer(() -> new HashMap<String, String>(variables)).anyTimes();
+        expect(build.getActions(EnvironmentContributingAction.class)).andAnswer(() -> new ArrayList<EnvironmentContributingAction>(actions))
+                                                                      .anyTimes();
+        EasyMock.replay(build);
+    }
+
+    @Test
+    void testAlwaysComputedWithoutScope() throws Exception {
+        EnvironmentCache.getEnvironment(build, listener);
+        EnvironmentCache.getEnvironment(build, listener);
+        assertEquals(2, computed);
+    }
+
+    @Test
+    void testReusedInScope() throws Exception {
+        final EvaluationScope scope = EvaluationScope.open(build, EvaluationScope.Stage.PREBUILD);
+        try {
+            final EnvVars first = EnvironmentCache.getEnvironment(build, listener);
+            first.put("FOO", "changed by the caller");
+            assertEquals("1", EnvironmentCache.getEnvironment(build, listener).get("FOO"));
+            assertEquals(1, computed);
+        } finally {
+            scope.close();
+        }
+    }
+
+    @Test
+    void testComputedAgainForStageChange() throws Exception {
+        inScope(EvaluationScope.Stage.PREBUILD);
+        inScope(EvaluationScope.Stage.PERFORM);
+        assertEquals(2, computed);
+    }
+
+    @Test
+    void testComputedAgainForNextStep() throws Exception {
+        assertEquals("1", inScope(EvaluationScope.Stage.PERFORM).get("FOO"));
+        // an action changed in place by an earlier step - e.g. injected variables - is not seen in the list of actions
+        environment.put("FOO", "2");
+        assertEquals("2", inScope(EvaluationScope.Stage.PERFORM).get("FOO"));
+        assertEquals(2, computed);
+    }
+
+    @Test
+    void testComputedAgainForBuildVariableChange() throws Exception {
+        final EvaluationScope scope = EvaluationScope.open(build, EvaluationScope.Stage.PERFORM);
+        try {
+            EnvironmentCache.getEnvironment(build, listener);
+            variables.put("BAR", "1");
+            EnvironmentCache.getEnvironment(build, listener);
+            EnvironmentCache.getEnvironment(build, listener);
+            assertEquals(2, computed);
+        } finally {
+            scope.close();
+        }
+    }
+
+    @Test
+    void testComputedAgainForActionChange() throws Exception {
+        final EvaluationScope scope = EvaluationScope.open(build, EvaluationScope.Stage.PERFORM);
+        try {
+            EnvironmentCache.getEnvironment(build, listener);
+            actions.add(EasyMock.createNiceMock(EnvironmentContributingAction.class));
+            EnvironmentCache.getEnvironment(build, listener);
+            EnvironmentCache.getEnvironment(build, listener);
+            assertEquals(2, computed);
+        } finally {
+            scope.close();
+        }
+    }
+
+    private EnvVars inScope(final EvaluationScope.Stage stage) throws Exception {
+        final EvaluationScope scope = EvaluationScope.open(build, stage);
+        try {
+            return EnvironmentCache.getEnvironment(build, listener);
+        } finally {
+            scope.close();
+        }
+    }
+
+}
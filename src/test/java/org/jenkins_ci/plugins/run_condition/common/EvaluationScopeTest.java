@@ -0,0 +1,107 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import hudson.FilePath;
+import hudson.model.AbstractBuild;
+import org.easymock.EasyMock;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class EvaluationScopeTest {
+
+    private final AbstractBuild<?, ?> build = EasyMock.createNiceMock(AbstractBuild.class);
+
+    @Test
+    void testNoScopeUnlessOpen() {
+        assertNull(EvaluationScope.get(build));
+        assertNull(EvaluationScope.get(null));
+    }
+
+    @Test
+    void testNestedScopesAreShared() {
+        final EvaluationScope outer = EvaluationScope.open(build, EvaluationScope.Stage.PREBUILD);
+        final EvaluationScope inner = EvaluationScope.open(build, EvaluationScope.Stage.PREBUILD);
+        assertSame(outer, inner);
+        assertSame(outer, EvaluationScope.get(build));
+        assertEquals(EvaluationScope.Stage.PREBUILD, outer.getStage());
+        inner.close();
+        assertSame(outer, EvaluationScope.get(build));
+        outer.close();
+        assertNull(EvaluationScope.get(build));
+    }
+
+    @Test
+    void testScopesArePerBuild() {
+        final AbstractBuild<?, ?> other = EasyMock.createNiceMock(AbstractBuild.class);
+        final EvaluationScope scope = EvaluationScope.open(build, EvaluationScope.Stage.PERFORM);
+        final EvaluationScope otherScope = EvaluationScope.open(other, EvaluationScope.Stage.PERFORM);
+        try {
+            assertNotSame(scope, otherScope);
+            scope.putExpansion("${FOO}", "foo");
+            assertNull(otherScope.getExpansion("${FOO}"));
+        } finally {
+            otherScope.close();
+            scope.close();
+        }
+    }
+
+    @Test
+    void testNothingIsKeptAfterClose() {
+        final EvaluationScope first = EvaluationScope.open(build, EvaluationScope.Stage.PREBUILD);
+        first.putExpansion("${FOO}", "foo");
+        first.close();
+        final EvaluationScope second = EvaluationScope.open(build, EvaluationScope.Stage.PERFORM);
+        try {
+            assertNotSame(first, second);
+            assertEquals(EvaluationScope.Stage.PERFORM, second.getStage());
+            assertNull(second.getExpansion("${FOO}"));
+        } finally {
+            second.close();
+        }
+    }
+
+    @Test
+    void testExistenceCanBeCleared() {
+        final FilePath file = new FilePath(new File("flag"));
+        final EvaluationScope scope = EvaluationScope.open(build, EvaluationScope.Stage.PERFORM);
+        try {
+            scope.putExistence(file, false);
+            assertEquals(Boolean.FALSE, scope.getExistence(file));
+            scope.clearExistence();
+            assertNull(scope.getExistence(file));
+        } finally {
+            scope.close();
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import hudson.FilePath;
+import hudson.model.AbstractBuild;
+import org.easymock.EasyMock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ExistenceCheckTest {
+
+    @TempDir
+    File base;
+
+    @Test
+    void testCheckAll() throws Exception {
+        Files.write(new File(base, "present").toPath(), new byte[0]);
+        final FilePath directory = new FilePath(base);
+        final EvaluationScope scope = EvaluationScope.open(EasyMock.createNiceMock(AbstractBuild.class), EvaluationScope.Stage.PERFORM);
+        try {
+            ExistenceCheck.checkAll(scope, Arrays.asList(directory.child("present"), directory.child("missing"), directory));
+            assertEquals(Boolean.TRUE, scope.getExistence(directory.child("present")));
+            assertEquals(Boolean.FALSE, scope.getExistence(directory.child("missing")));
+            assertEquals(Boolean.TRUE, scope.getExistence(new FilePath(base)));
+            assertNull(scope.getExistence(directory.child("unchecked")));
+        } finally {
+            scope.close();
+        }
+    }
+
+}
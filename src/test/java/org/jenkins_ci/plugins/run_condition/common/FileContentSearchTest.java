@@ -0,0 +1,148 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class FileContentSearchTest {
+
+    @TempDir
+    File base;
+
+    @Test
+    void testLiteral() throws Exception {
+        final File file = write("first line\nBUILD SUCCESSFUL in 3s\nlast line\n");
+        assertEquals(FileContentSearch.Result.FOUND, search(file, "BUILD SUCCESSFUL", false, 0));
+        assertEquals(FileContentSearch.Result.FOUND, search(file, "line\nBUILD", false, 0));
+        assertEquals(FileContentSearch.Result.NOT_FOUND, search(file, "BUILD FAILED", false, 0));
+        // the pattern is not a regular expression
+        assertEquals(FileContentSearch.Result.NOT_FOUND, search(file, "BUILD .*", false, 0));
+    }
+
+    @Test
+    void testRegex() throws Exception {
+        final File file = write("first line\nBUILD SUCCESSFUL in 3s\nlast line\n");
+        assertEquals(FileContentSearch.Result.FOUND, search(file, "BUILD \\w+ in \\d+s", true, 0));
+        assertEquals(FileContentSearch.Result.FOUND, search(file, "^last", true, 0));
+        assertEquals(FileContentSearch.Result.NOT_FOUND, search(file, "^BUILD FAILED", true, 0));
+        // one line at a time
+        assertEquals(FileContentSearch.Result.NOT_FOUND, search(file, "line\\nBUILD", true, 0));
+    }
+
+    @Test
+    void testMaxBytes() throws Exception {
+        final File file = write("0123456789needle");
+        assertEquals(FileContentSearch.Result.FOUND, search(file, "needle", false, 16));
+        assertEquals(FileContentSearch.Result.NOT_FOUND, search(file, "needle", false, 15));
+        assertEquals(FileContentSearch.Result.FOUND, search(file, "need", true, 14));
+        assertEquals(FileContentSearch.Result.NOT_FOUND, search(file, "needle", true, 15));
+    }
+
+    @Test
+    void testMatchAcrossWindows() throws Exception {
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) content.append("abcdefghij");
+        content.append("needle");
+        final File file = write(content.toString());
+        // every possible split of the needle between two windows
+        for (int window = 7; window < 40; window++)
+            assertEquals(FileContentSearch.Result.FOUND, new FileContentSearch(file.getName(), "needle", false, 0, window).invoke(base, null), "window " + window);
+        assertEquals(FileContentSearch.Result.NOT_FOUND, new FileContentSearch(file.getName(), "needles", false, 0, 16).invoke(base, null));
+    }
+
+    @Test
+    void testLongLinesAreMatchedInPieces() throws Exception {
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) content.append("abcdefghij");
+        content.append("needle\r\nnext line");
+        final File file = write(content.toString());
+        assertEquals(FileContentSearch.Result.FOUND, new FileContentSearch(file.getName(), "needle$", true, 0, 16).invoke(base, null));
+        assertEquals(FileContentSearch.Result.FOUND, new FileContentSearch(file.getName(), "^next line$", true, 0, 16).invoke(base, null));
+        // each piece of the long line is matched on its own
+        assertEquals(FileContentSearch.Result.FOUND, new FileContentSearch(file.getName(), "^abcdef", true, 0, 16).invoke(base, null));
+        assertEquals(FileContentSearch.Result.NOT_FOUND, new FileContentSearch(file.getName(), "j{2}", true, 0, 16).invoke(base, null));
+    }
+
+    @Test
+    void testMissingFile() throws Exception {
+        assertEquals(FileContentSearch.Result.MISSING, search(new File(base, "missing.txt"), "anything", false, 0));
+        assertEquals(FileContentSearch.Result.MISSING, search(base, "anything", true, 0));
+    }
+
+    @Test
+    void testEmptyFile() throws Exception {
+        final File file = write("");
+        assertEquals(FileContentSearch.Result.NOT_FOUND, search(file, "anything", false, 0));
+        assertEquals(FileContentSearch.Result.NOT_FOUND, search(file, "anything", true, 0));
+    }
+
+    @Test
+    void testFileOutsideBaseDirectory() throws Exception {
+        final File inside = new File(base, "inside");
+        assertTrue(inside.mkdir());
+        write("secret");
+        assertThrows(IOException.class, () -> new FileContentSearch("../file.txt", "secret", false, 0).invoke(inside, null));
+        assertThrows(IOException.class, () -> new FileContentSearch("sub/../../file.txt", "secret", false, 0).invoke(inside, null));
+        final String absolute = new File(base, "file.txt").getAbsolutePath();
+        assertThrows(IOException.class, () -> new FileContentSearch(absolute, "secret", false, 0).invoke(inside, null));
+        assertEquals(FileContentSearch.Result.FOUND, new FileContentSearch("inside/../file.txt", "secret", false, 0).invoke(base, null));
+    }
+
+    @Test
+    void testLinkOutsideBaseDirectory() throws Exception {
+        final File inside = new File(base, "inside");
+        assertTrue(inside.mkdir());
+        final File secret = write("secret");
+        try {
+            Files.createSymbolicLink(new File(inside, "link.txt").toPath(), secret.toPath());
+        } catch (IOException | UnsupportedOperationException e) {
+            assumeTrue(false, "links are not supported");
+        }
+        assertThrows(IOException.class, () -> new FileContentSearch("link.txt", "secret", false, 0).invoke(inside, null));
+    }
+
+    private File write(final String content) throws Exception {
+        final File file = new File(base, "file.txt");
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static FileContentSearch.Result search(final File file, final String pattern, final boolean regex, final long maxBytes)
+            throws Exception {
+        return new FileContentSearch(file.getName(), pattern, regex, maxBytes).invoke(file.getParentFile(), null);
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import hudson.FilePath;
+import hudson.model.AbstractBuild;
+import org.easymock.EasyMock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileIndexTest {
+
+    @TempDir
+    File base;
+
+    private final AbstractBuild<?, ?> build = EasyMock.createNiceMock(AbstractBuild.class);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        for (String path : new String[] {"a.txt", "src/c.txt", "src/main/d.txt", "src/main/e.java", ".git/config"}) {
+            final File file = new File(base, path);
+            Files.createDirectories(file.getParentFile().toPath());
+            Files.write(file.toPath(), path.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testExists() throws Exception {
+        final FileIndex index = FileIndex.get(build, new FilePath(base));
+        assertTrue(index.exists("a.txt"));
+        assertTrue(index.exists("src/main/d.txt"));
+        assertTrue(index.exists("src\\main\\d.txt"));
+        assertTrue(index.exists("src/main/"));
+        assertTrue(index.exists(".git/config"));
+        assertTrue(index.exists(""));
+        assertFalse(index.exists("src/main/x.txt"));
+        assertFalse(index.exists("src/mai"));
+    }
+
+    @Test
+    void testScanMatchesWalk() throws Exception {
+        final FileIndex index = FileIndex.get(build, new FilePath(base));
+        for (String includes : new String[] {"**", "**/*.txt", "src/", "**/config"}) {
+            final FileMatchScanner scanner = new FileMatchScanner(includes, null, Integer.MAX_VALUE, Long.MAX_VALUE);
+            final FileMatchScanner.Result walked = scanner.invoke(base, null);
+            final FileMatchScanner.Result scanned = scanner.scan(index);
+            assertEquals(walked.getCount(), scanned.getCount(), includes);
+            assertEquals(walked.getSize(), scanned.getSize(), includes);
+        }
+    }
+
+    @Test
+    void testIndexIsReusedUntilBaseDirectoryChanges() throws Exception {
+        final FilePath directory = new FilePath(base);
+        final FileIndex index = FileIndex.get(build, directory);
+        assertSame(index, FileIndex.get(build, directory));
+        Files.write(new File(base, "b.txt").toPath(), new byte[1]);
+        assertTrue(base.setLastModified(base.lastModified() + 2000));
+        final FileIndex rebuilt = FileIndex.get(build, directory);
+        assertTrue(rebuilt.exists("b.txt"));
+        assertFalse(index.exists("b.txt"));
+    }
+
+    @Test
+    void testIndexIsDroppedWhenBuildCompletes() throws Exception {
+        final FilePath directory = new FilePath(base);
+        final FileIndex index = FileIndex.get(build, directory);
+        new FileIndex.Cleaner().onCompleted(build, null);
+        assertNotSame(index, FileIndex.get(build, directory));
+    }
+
+    @Test
+    void testCaseInsensitiveLookup() {
+        final String[] paths = {"Src", "Src/Main.java", "a.txt"};
+        final long[] sizes = {-1, 1, 1};
+        final FileIndex insensitive = new FileIndex(new FileIndex.Snapshot(1, paths, sizes, true));
+        assertTrue(insensitive.exists("src/main.JAVA"));
+        assertTrue(insensitive.exists("A.TXT"));
+        assertFalse(insensitive.exists("src/other.java"));
+        // the paths themselves keep their case
+        assertEquals("Src/Main.java", insensitive.getPath(1));
+        final FileIndex sensitive = new FileIndex(new FileIndex.Snapshot(1, paths, sizes, false));
+        assertTrue(sensitive.exists("Src/Main.java"));
+        assertFalse(sensitive.exists("src/main.java"));
+    }
+
+    @Test
+    void testIsIndexable() {
+        assertTrue(FileIndex.isIndexable("a.txt"));
+        assertTrue(FileIndex.isIndexable("src/main/d.txt"));
+        assertTrue(FileIndex.isIndexable(".git/config"));
+        assertTrue(FileIndex.isIndexable("a..b"));
+        assertFalse(FileIndex.isIndexable("/etc/passwd"));
+        assertFalse(FileIndex.isIndexable("C:\\Windows"));
+        assertFalse(FileIndex.isIndexable("../a.txt"));
+        assertFalse(FileIndex.isIndexable("src/./c.txt"));
+        assertFalse(FileIndex.isIndexable("src/.."));
+        assertFalse(FileIndex.isIndexable(null));
+    }
+
+}
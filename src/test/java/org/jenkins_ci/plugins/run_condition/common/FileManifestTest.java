@@ -0,0 +1,137 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileManifestTest {
+
+    @TempDir
+    File base;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        for (String path : new String[] {"module-a/src/A.java", "module-a/pom.xml", "module-b/src/B.java", "module-b/target/B.class"})
+            write(path, path);
+    }
+
+    @Test
+    void testMatchesFiles() throws Exception {
+        final FileManifest manifest = scan("module-a/**,module-b/**", "**/target/", null);
+        assertEquals(3, manifest.size());
+        assertEquals("module-a/pom.xml", manifest.getPath(0));
+        assertEquals("module-a/src/A.java", manifest.getPath(1));
+        assertEquals("module-b/src/B.java", manifest.getPath(2));
+    }
+
+    @Test
+    void testNoChanges() throws Exception {
+        final FileManifest first = scan("module-a/**", null, null);
+        assertTrue(scan("module-a/**", null, first).changesSince(first).isEmpty());
+    }
+
+    @Test
+    void testTouchIsNotAChange() throws Exception {
+        final FileManifest first = scan("module-a/**", null, null);
+        final File file = new File(base, "module-a/src/A.java");
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(file.lastModified() + 60000));
+        assertTrue(scan("module-a/**", null, first).changesSince(first).isEmpty());
+    }
+
+    @Test
+    void testChanges() throws Exception {
+        final FileManifest first = scan("**", null, null);
+        write("module-a/src/A.java", "changed");
+        write("module-a/src/A2.java", "added");
+        assertTrue(new File(base, "module-b/src/B.java").delete());
+        final FileManifest.Changes changes = scan("**", null, first).changesSince(first);
+        assertEquals(1, changes.getAdded());
+        assertEquals(1, changes.getRemoved());
+        assertEquals(1, changes.getModified());
+        assertFalse(changes.isEmpty());
+    }
+
+    @Test
+    void testOnlyTouchedFilesAreRead() throws Exception {
+        final FileManifest first = scan("**", null, null);
+        // same size and last modified time, so the digest from the first manifest is kept
+        final File file = new File(base, "module-a/src/A.java");
+        final long lastModified = file.lastModified();
+        write("module-a/src/A.java", "module-a/src/X.java");
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(lastModified));
+        assertTrue(scan("**", null, first).changesSince(first).isEmpty());
+        assertEquals(1, scan("**", null, null).changesSince(first).getModified());
+    }
+
+    @Test
+    void testFileDeletedWhileScanningIsRemoved() throws Exception {
+        final TreeMap<String, BasicFileAttributes> files = new TreeMap<String, BasicFileAttributes>();
+        for (String path : new String[] {"module-a/pom.xml", "module-a/src/A.java", "module-b/src/B.java"})
+            files.put(path, Files.readAttributes(new File(base, path).toPath(), BasicFileAttributes.class));
+        assertTrue(new File(base, "module-a/src/A.java").delete());
+        final FileManifest manifest = new FileManifest.Scanner("**", null, null).create(base, files);
+        assertEquals(2, manifest.size());
+        assertEquals("module-a/pom.xml", manifest.getPath(0));
+        assertEquals("module-b/src/B.java", manifest.getPath(1));
+    }
+
+    @Test
+    void testEncode() throws Exception {
+        final FileManifest manifest = scan("**", null, null);
+        final FileManifest decoded = FileManifest.decode(manifest.encode());
+        assertEquals(manifest.size(), decoded.size());
+        for (int i = 0; i < manifest.size(); i++) {
+            assertEquals(manifest.getPath(i), decoded.getPath(i));
+            assertEquals(manifest.getDigest(i), decoded.getDigest(i));
+        }
+        assertTrue(decoded.changesSince(manifest).isEmpty());
+        assertNull(FileManifest.decode("not a manifest"));
+    }
+
+    private FileManifest scan(final String includes, final String excludes, final FileManifest previous) throws Exception {
+        return new FileManifest.Scanner(includes, excludes, previous).invoke(base, null);
+    }
+
+    private void write(final String path, final String content) throws Exception {
+        final File file = new File(base, path);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
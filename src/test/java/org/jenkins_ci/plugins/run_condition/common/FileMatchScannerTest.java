@@ -0,0 +1,99 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import hudson.FilePath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileMatchScannerTest {
+
+    @TempDir
+    File base;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        for (String path : new String[] {"a.txt", "b.log", "src/c.txt", "src/main/d.txt", "src/main/e.java", "target/f.txt",
+                                         ".git/config", "src/.svn/entries"}) {
+            final File file = new File(base, path);
+            Files.createDirectories(file.getParentFile().toPath());
+            Files.write(file.toPath(), path.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testSameCountAsList() throws Exception {
+        assertSameCountAsList("**", null);
+        assertSameCountAsList("**/*.txt", null);
+        assertSameCountAsList("**/*.txt", "target/");
+        assertSameCountAsList("src/**", "**/*.java");
+        assertSameCountAsList("*.txt, src/main/*", null);
+        assertSameCountAsList("**/config", null);
+        assertSameCountAsList("nothing/**", null);
+        assertSameCountAsList("**", "**/*.txt,**/*.log");
+    }
+
+    @Test
+    void testStopsAtLimit() throws Exception {
+        final FileMatchScanner.Result first = new FileMatchScanner("**", null, 1, Long.MAX_VALUE).invoke(base, null);
+        assertEquals(1, first.getCount());
+        assertTrue(first.isStopped());
+        assertEquals(3, new FileMatchScanner("**/*.txt", null, 3, Long.MAX_VALUE).invoke(base, null).getCount());
+        assertFalse(new FileMatchScanner("**/*.txt", null, 5, Long.MAX_VALUE).invoke(base, null).isStopped());
+    }
+
+    @Test
+    void testAddsUpSizes() throws Exception {
+        // each file contains its own path
+        final FileMatchScanner.Result all = new FileMatchScanner("src/**", null, Integer.MAX_VALUE, Long.MAX_VALUE).invoke(base, null);
+        assertEquals(3, all.getCount());
+        assertEquals("src/c.txt".length() + "src/main/d.txt".length() + "src/main/e.java".length(), all.getSize());
+        final FileMatchScanner.Result stopped = new FileMatchScanner("src/**", null, Integer.MAX_VALUE, 10).invoke(base, null);
+        assertTrue(stopped.isStopped());
+        assertTrue(stopped.getSize() >= 10);
+        assertTrue(stopped.getCount() < 3);
+    }
+
+    @Test
+    void testMissingDirectoryHasNoMatches() throws Exception {
+        assertEquals(0, new FileMatchScanner("**", null, 1, Long.MAX_VALUE).invoke(new File(base, "missing"), null).getCount());
+    }
+
+    private void assertSameCountAsList(final String includes, final String excludes) throws Exception {
+        final int expected = new FilePath(base).list(includes, excludes).length;
+        assertEquals(expected, new FileMatchScanner(includes, excludes, Integer.MAX_VALUE, Long.MAX_VALUE).invoke(base, null).getCount(),
+                     includes + " excluding " + excludes);
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PatternCacheTest {
+
+    @Test
+    void testCompiledPatternIsReused() {
+        final PatternCache cache = new PatternCache(2);
+        final Pattern pattern = cache.get("^a+$");
+        assertSame(pattern, cache.get("^a+$"));
+        assertTrue(pattern.matcher("aaa").matches());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(0, cache.getEvictions());
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsEvicted() {
+        final PatternCache cache = new PatternCache(2);
+        final Pattern a = cache.get("a");
+        cache.get("b");
+        cache.get("a");
+        cache.get("c");
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertSame(a, cache.get("a"));
+        cache.get("b");
+        assertEquals(4, cache.getMisses());
+        assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    void testClearDropsPatterns() {
+        final PatternCache cache = new PatternCache(2);
+        final Pattern a = cache.get("a");
+        cache.clear();
+        assertNotSame(a, cache.get("a"));
+    }
+
+    @Test
+    void testInvalidExpressionIsNotCached() {
+        final PatternCache cache = new PatternCache(2);
+        assertThrows(PatternSyntaxException.class, () -> cache.get("(unclosed"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testMaxSizeMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new PatternCache(0));
+    }
+
+}
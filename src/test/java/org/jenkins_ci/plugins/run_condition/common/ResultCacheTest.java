@@ -0,0 +1,100 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import org.easymock.EasyMock;
+import org.jenkins_ci.plugins.run_condition.RunCondition;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ResultCacheTest {
+
+    private final AbstractBuild<?, ?> build = EasyMock.createNiceMock(AbstractBuild.class);
+
+    @Test
+    void testStableResultIsSharedBetweenStages() {
+        final Fixed condition = new Fixed(true);
+        assertNull(ResultCache.get(build, condition, EvaluationScope.Stage.PERFORM));
+        ResultCache.put(build, condition, EvaluationScope.Stage.PREBUILD, false);
+        assertEquals(Boolean.FALSE, ResultCache.get(build, condition, EvaluationScope.Stage.PERFORM));
+        ResultCache.put(build, condition, EvaluationScope.Stage.PERFORM, true);
+        assertEquals(Boolean.TRUE, ResultCache.get(build, condition, EvaluationScope.Stage.PERFORM));
+        assertEquals(Boolean.FALSE, ResultCache.get(build, condition, EvaluationScope.Stage.PREBUILD));
+    }
+
+    @Test
+    void testResultIsKeptPerConditionInstance() {
+        final Fixed condition = new Fixed(true);
+        ResultCache.put(build, condition, EvaluationScope.Stage.PREBUILD, true);
+        assertNull(ResultCache.get(build, new Fixed(true), EvaluationScope.Stage.PREBUILD));
+        assertNull(ResultCache.get(EasyMock.createNiceMock(AbstractBuild.class), condition, EvaluationScope.Stage.PREBUILD));
+    }
+
+    @Test
+    void testUnstableResultIsNotCached() {
+        final Fixed condition = new Fixed(false);
+        ResultCache.put(build, condition, EvaluationScope.Stage.PREBUILD, true);
+        assertNull(ResultCache.get(build, condition, EvaluationScope.Stage.PREBUILD));
+        assertNull(ResultCache.get(null, condition, EvaluationScope.Stage.PREBUILD));
+    }
+
+    @Test
+    void testResultsAreDroppedWhenBuildCompletes() {
+        final Fixed condition = new Fixed(true);
+        ResultCache.put(build, condition, EvaluationScope.Stage.PREBUILD, true);
+        new ResultCache.Cleaner().onCompleted(build, null);
+        assertNull(ResultCache.get(build, condition, EvaluationScope.Stage.PERFORM));
+    }
+
+    private static final class Fixed extends RunCondition {
+
+        private final boolean stable;
+
+        Fixed(final boolean stable) {
+            this.stable = stable;
+        }
+
+        @Override
+        public boolean isBuildStable() {
+            return stable;
+        }
+
+        @Override
+        public boolean runPrebuild(final AbstractBuild<?, ?> build, final BuildListener listener) {
+            return true;
+        }
+
+        @Override
+        public boolean runPerform(final AbstractBuild<?, ?> build, final BuildListener listener) {
+            return true;
+        }
+
+    }
+
+}
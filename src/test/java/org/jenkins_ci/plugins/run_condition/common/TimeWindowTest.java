@@ -0,0 +1,120 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeWindowTest {
+
+    private static final ZoneId LONDON = ZoneId.of("Europe/London");
+
+    @Test
+    void testMinuteOfDayMatchesJavaTime() {
+        final TimeWindow window = new TimeWindow(0, 0, LONDON);
+        // every hour across both daylight saving changes of a year, and some times before the epoch
+        ZonedDateTime time = ZonedDateTime.of(2024, 1, 1, 0, 17, 42, 0, LONDON);
+        for (int hour = 0; hour < 366 * 24; hour++) {
+            assertEquals(time.getHour() * 60 + time.getMinute(), window.minuteOfDay(time.toInstant().toEpochMilli()), time.toString());
+            time = time.plusHours(1);
+        }
+        final ZonedDateTime old = ZonedDateTime.of(1965, 6, 30, 23, 59, 59, 0, LONDON);
+        assertEquals(23 * 60 + 59, window.minuteOfDay(old.toInstant().toEpochMilli()));
+    }
+
+    @Test
+    void testContains() {
+        final TimeWindow day = new TimeWindow(TimeWindow.minuteOfDay(9, 0), TimeWindow.minuteOfDay(18, 30), LONDON);
+        assertFalse(day.isOvernight());
+        assertTrue(day.containsMinute(TimeWindow.minuteOfDay(9, 0)));
+        assertTrue(day.containsMinute(TimeWindow.minuteOfDay(18, 30)));
+        assertFalse(day.containsMinute(TimeWindow.minuteOfDay(8, 59)));
+        assertFalse(day.containsMinute(TimeWindow.minuteOfDay(18, 31)));
+    }
+
+    @Test
+    void testContainsOvernight() {
+        final TimeWindow night = new TimeWindow(TimeWindow.minuteOfDay(22, 0), TimeWindow.minuteOfDay(4, 0), LONDON);
+        assertTrue(night.isOvernight());
+        assertTrue(night.containsMinute(TimeWindow.minuteOfDay(22, 0)));
+        assertTrue(night.containsMinute(TimeWindow.minuteOfDay(23, 59)));
+        assertTrue(night.containsMinute(0));
+        assertTrue(night.containsMinute(TimeWindow.minuteOfDay(4, 0)));
+        assertFalse(night.containsMinute(TimeWindow.minuteOfDay(4, 1)));
+        assertFalse(night.containsMinute(TimeWindow.minuteOfDay(21, 59)));
+        assertTrue(night.contains(ZonedDateTime.of(2024, 3, 31, 1, 30, 0, 0, LONDON).toInstant().toEpochMilli()));
+    }
+
+    @Test
+    void testSingleMinute() {
+        final TimeWindow minute = new TimeWindow(600, 600, LONDON);
+        assertTrue(minute.containsMinute(600));
+        assertFalse(minute.containsMinute(599));
+        assertFalse(minute.containsMinute(601));
+    }
+
+    @Test
+    void testCachedContainsAcrossDaylightSavingChanges() {
+        final int start = TimeWindow.minuteOfDay(0, 45);
+        final int end = TimeWindow.minuteOfDay(1, 15);
+        final TimeWindow window = new TimeWindow(start, end, LONDON);
+        for (final ZonedDateTime day : new ZonedDateTime[] {ZonedDateTime.of(2024, 3, 30, 12, 0, 0, 0, LONDON),
+                                                            ZonedDateTime.of(2024, 10, 26, 12, 0, 0, 0, LONDON)}) {
+            final long from = day.toInstant().toEpochMilli();
+            for (long time = from; time < from + 48 * 60 * 60 * 1000L; time += 7 * 1000) {
+                final int minute = window.minuteOfDay(time);
+                assertEquals(minute >= start && minute <= end, window.contains(time), Long.toString(time));
+            }
+        }
+    }
+
+    @Test
+    void testNextChange() {
+        final TimeWindow window = new TimeWindow(TimeWindow.minuteOfDay(9, 0), TimeWindow.minuteOfDay(17, 29), LONDON);
+        final ZonedDateTime morning = ZonedDateTime.of(2024, 6, 3, 8, 15, 0, 0, LONDON);
+        assertEquals(morning.withHour(9).withMinute(0).toInstant().toEpochMilli(), window.getNextChange(morning.toInstant().toEpochMilli()));
+        final ZonedDateTime afternoon = morning.withHour(15);
+        assertEquals(afternoon.withHour(17).withMinute(30).toInstant().toEpochMilli(),
+                     window.getNextChange(afternoon.toInstant().toEpochMilli()));
+        // the clocks go back at 02:00 BST, which is a change of offset before the window opens
+        final ZonedDateTime autumn = ZonedDateTime.of(2024, 10, 26, 18, 0, 0, 0, LONDON);
+        assertEquals(ZonedDateTime.of(2024, 10, 27, 1, 0, 0, 0, ZoneId.of("UTC")).toInstant().toEpochMilli(),
+                     window.getNextChange(autumn.toInstant().toEpochMilli()));
+    }
+
+    @Test
+    void testInvalidMinutes() {
+        assertThrows(IllegalArgumentException.class, () -> new TimeWindow(-1, 0, LONDON));
+        assertThrows(IllegalArgumentException.class, () -> new TimeWindow(0, TimeWindow.MINUTES_PER_DAY, LONDON));
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package org.jenkins_ci.plugins.run_condition.common;
+
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import net.sf.json.JSONObject;
+import org.easymock.EasyMock;
+import org.junit.jupiter.api.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenExpansionTest {
+
+    private final AbstractBuild<?, ?> build = EasyMock.createNiceMock(AbstractBuild.class);
+    private final BuildListener listener = EasyMock.createNiceMock(BuildListener.class);
+
+    @Test
+    void testExpansionIsReusedInScope() throws Exception {
+        final EvaluationScope scope = EvaluationScope.open(build, EvaluationScope.Stage.PERFORM);
+        try {
+            // a value in the scope is returned without expanding the template again
+            scope.putExpansion("${BUILD_NUMBER}-${FOO}", "42-foo");
+            assertEquals("42-foo", TokenExpansion.expandAll(build, listener, "${BUILD_NUMBER}-${FOO}"));
+            assertEquals("42-foo", TokenExpansion.expandAll(build, listener, "${BUILD_NUMBER}-${FOO}"));
+        } finally {
+            scope.close();
+        }
+    }
+
+    @Test
+    void testExpandDoesNotRecordInput() throws Exception {
+        final ConditionTraceAction action = new ConditionTraceAction();
+        final AbstractBuild<?, ?> traced = EasyMock.createNiceMock(AbstractBuild.class);
+        EasyMock.expect(traced.getAction(ConditionTraceAction.class)).andReturn(action).anyTimes();
+        EasyMock.replay(traced);
+        final EvaluationScope scope = EvaluationScope.open(traced, EvaluationScope.Stage.PERFORM);
+        try {
+            scope.putExpansion("${FOO}", "foo");
+            final ConditionTraceAction.Evaluation evaluation = ConditionTraceAction.start();
+            assertEquals("foo", TokenExpansion.expand(traced, listener, "${FOO}"));
+            evaluation.finish(traced, String.class, EvaluationScope.Stage.PERFORM, "0", true, null);
+        } finally {
+            scope.close();
+        }
+        assertFalse(JSONObject.fromObject(action.getRecords().get(0)).has("i"));
+    }
+
+    @Test
+    void testDefaultUncachedMacros() {
+        assertFalse(TokenExpansion.isCacheable("${BUILD_LOG}"));
+        assertFalse(TokenExpansion.isCacheable("$BUILD_LOG"));
+        assertFalse(TokenExpansion.isCacheable("before ${BUILD_LOG_REGEX, regex=\"ERROR\"} after"));
+        assertFalse(TokenExpansion.isCacheable("${BUILD_LOG_EXCERPT, start=\"a\", end=\"b\"}"));
+        assertTrue(TokenExpansion.isCacheable("${BUILD_NUMBER}"));
+        assertTrue(TokenExpansion.isCacheable("${BUILD_LOGGER}"));
+        assertTrue(TokenExpansion.isCacheable("BUILD_LOG"));
+    }
+
+    @Test
+    void testHasMacros() {
+        assertTrue(TokenExpansion.hasMacros("^${NODE_NAME}$"));
+        assertTrue(TokenExpansion.hasMacros("$BUILD_NUMBER"));
+        assertTrue(TokenExpansion.hasMacros("cost: $$5"));
+        assertFalse(TokenExpansion.hasMacros("^linux-[0-9]+$"));
+        assertFalse(TokenExpansion.hasMacros("a$|b$"));
+        assertFalse(TokenExpansion.hasMacros(null));
+    }
+
+    @Test
+    void testUncachedPattern() {
+        final Pattern pattern = TokenExpansion.createUncachedPattern(" FOO, ,BAR.BAZ ");
+        assertTrue(pattern.matcher("${FOO}").find());
+        assertTrue(pattern.matcher("$FOO").find());
+        assertTrue(pattern.matcher("x ${BAR.BAZ} y").find());
+        assertFalse(pattern.matcher("${FOOD}").find());
+        // the names are literal, not regular expressions
+        assertFalse(pattern.matcher("${BARXBAZ}").find());
+    }
+
+    @Test
+    void testNoUncachedMacros() {
+        assertNull(TokenExpansion.createUncachedPattern(null));
+        assertNull(TokenExpansion.createUncachedPattern(""));
+        assertNull(TokenExpansion.createUncachedPattern(" , "));
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2012 by Chris Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.contributed;
+
+import hudson.Proc;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommandInterperterConditionTest {
+
+    @Test
+    void testTimeoutKillsProcess() throws Exception {
+        final FakeProc proc = new FakeProc(3);
+        final AtomicBoolean timedOut = new AtomicBoolean();
+        assertEquals(-1, CommandInterperterCondition.join(proc, 1, timedOut));
+        assertTrue(proc.killed);
+        assertTrue(timedOut.get());
+    }
+
+    @Test
+    void testFailureIsNotTimeout() throws Exception {
+        final FakeProc proc = new FakeProc(3);
+        proc.finish(3);
+        final AtomicBoolean timedOut = new AtomicBoolean();
+        assertEquals(3, CommandInterperterCondition.join(proc, 1, timedOut));
+        // the killer is cancelled once the process has finished
+        Thread.sleep(1500);
+        assertFalse(proc.killed);
+        assertFalse(timedOut.get());
+    }
+
+    @Test
+    void testNoTimeout() throws Exception {
+        final FakeProc proc = new FakeProc(0);
+        proc.finish(0);
+        final AtomicBoolean timedOut = new AtomicBoolean();
+        assertEquals(0, CommandInterperterCondition.join(proc, 0, timedOut));
+        assertFalse(timedOut.get());
+    }
+
+    @Test
+    void testOutputIsTruncated() throws Exception {
+        final ByteArrayOutputStream log = new ByteArrayOutputStream();
+        final OutputStream out = new CommandInterperterCondition.LimitedOutputStream(log, 5);
+        out.write("abc".getBytes(StandardCharsets.UTF_8));
+        out.write('d');
+        out.write("efgh".getBytes(StandardCharsets.UTF_8));
+        out.write("ijk".getBytes(StandardCharsets.UTF_8));
+        out.close();
+        assertEquals("abcde\n" + Messages.CommandInterpreterCondition_OutputTruncated() + '\n', log.toString("UTF-8"));
+    }
+
+    @Test
+    void testOutputWithinLimit() throws Exception {
+        final ByteArrayOutputStream log = new ByteArrayOutputStream();
+        final OutputStream out = new CommandInterperterCondition.LimitedOutputStream(log, 5);
+        out.write("abcd".getBytes(StandardCharsets.UTF_8));
+        out.close();
+        assertEquals("abcd", log.toString("UTF-8"));
+    }
+
+    /**
+     * A process that runs until it is finished or killed.
+     */
+    private static final class FakeProc extends Proc {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile int exitCode;
+        private volatile boolean killed;
+
+        FakeProc(final int exitCode) {
+            this.exitCode = exitCode;
+        }
+
+        void finish(final int exitCode) {
+            this.exitCode = exitCode;
+            done.countDown();
+        }
+
+        @Override
+        public boolean isAlive() {
+            return done.getCount() > 0;
+        }
+
+        @Override
+        public void kill() {
+            killed = true;
+            finish(-1);
+        }
+
+        @Override
+        public int join() throws InterruptedException {
+            if (!done.await(30, TimeUnit.SECONDS))
+                throw new AssertionError("the process was not killed");
+            return exitCode;
+        }
+
+        @Override
+        public InputStream getStdout() {
+            return null;
+        }
+
+        @Override
+        public InputStream getStderr() {
+            return null;
+        }
+
+        @Override
+        public OutputStream getStdin() {
+            return null;
+        }
+
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2012 by Chris Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.contributed;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScriptCacheTest {
+
+    @TempDir
+    File directory;
+
+    @Test
+    void testWritesScriptOnce() throws Exception {
+        final File script = new File(store("test -f x", 10));
+        assertEquals("test -f x", new String(Files.readAllBytes(script.toPath()), Charset.defaultCharset()));
+        assertEquals(script.getAbsolutePath(), store("test -f x", 10));
+        assertEquals("test -f x", new String(Files.readAllBytes(script.toPath()), Charset.defaultCharset()));
+        assertNotEquals(script.getAbsolutePath(), store("test -f y", 10));
+        assertEquals(2, directory.list().length);
+    }
+
+    @Test
+    void testRewritesDamagedScript() throws Exception {
+        final File script = new File(store("test -f x", 10));
+        Files.write(script.toPath(), "test".getBytes(Charset.defaultCharset()));
+        assertEquals(script.getAbsolutePath(), store("test -f x", 10));
+        assertEquals("test -f x", new String(Files.readAllBytes(script.toPath()), Charset.defaultCharset()));
+        Files.write(script.toPath(), "test -f y".getBytes(Charset.defaultCharset()));
+        assertEquals(script.getAbsolutePath(), store("test -f x", 10));
+        assertEquals("test -f x", new String(Files.readAllBytes(script.toPath()), Charset.defaultCharset()));
+    }
+
+    @Test
+    void testUpdatesLastModifiedOnEveryUse() throws Exception {
+        final File script = new File(store("test -f x", 10));
+        // used a minute ago, just after an update that was almost an hour late
+        final long recent = System.currentTimeMillis() - 60000;
+        assertTrue(script.setLastModified(recent));
+        store("test -f x", 10);
+        assertTrue(script.lastModified() > recent + 30000);
+        final long old = System.currentTimeMillis() - 2 * ScriptCache.RECENT;
+        assertTrue(script.setLastModified(old));
+        store("test -f x", 10);
+        assertTrue(script.lastModified() > old + ScriptCache.RECENT);
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsed() throws Exception {
+        final long old = System.currentTimeMillis() - 10 * ScriptCache.RECENT;
+        for (int i = 0; i < 3; i++)
+            assertTrue(new File(store("exit " + i, 3)).setLastModified(old + i * ScriptCache.RECENT));
+        final File newest = new File(store("exit 3", 3));
+        assertEquals(3, directory.list().length);
+        assertFalse(new File(directory, ScriptCache.digest("exit 0") + ".sh").exists());
+        assertTrue(new File(directory, ScriptCache.digest("exit 1") + ".sh").exists());
+        assertTrue(newest.exists());
+    }
+
+    @Test
+    void testDoesNotEvictRecentlyUsed() throws Exception {
+        for (int i = 0; i < 4; i++)
+            store("exit " + i, 3);
+        assertEquals(4, directory.list().length);
+    }
+
+    private String store(final String contents, final int maxScripts) throws Exception {
+        return new ScriptCache.Store(ScriptCache.digest(contents) + ".sh", contents, maxScripts).invoke(directory, null);
+    }
+
+}
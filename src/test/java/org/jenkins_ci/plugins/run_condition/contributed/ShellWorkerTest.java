@@ -0,0 +1,174 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2012 by Chris Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.contributed;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ShellWorkerTest {
+
+    private static final String SHELL = "/bin/sh";
+
+    @TempDir
+    File workspace;
+
+    @TempDir
+    File scripts;
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue(new File(SHELL).canExecute());
+    }
+
+    @Test
+    void testExitCode() throws Exception {
+        assertEquals(0, run("true", Collections.<String, String>emptyMap()).getExitCode());
+        assertEquals(3, run("exit 3", Collections.<String, String>emptyMap()).getExitCode());
+        assertFalse(run("exit 3", Collections.<String, String>emptyMap()).isTimedOut());
+        // -e stops at the first command that fails
+        final ShellWorker.Result result = run("false\necho after", Collections.<String, String>emptyMap());
+        assertEquals(1, result.getExitCode());
+        assertFalse(output().contains("after\n"));
+    }
+
+    @Test
+    void testOutputAndEnvironment() throws Exception {
+        final Map<String, String> env = new HashMap<String, String>();
+        env.put("GREETING", "it's \"quoted\" $HOME");
+        env.put("not.a.name", "ignored");
+        final ShellWorker.Result result = run("echo \"$GREETING\"\nprintf 'no newline'", env);
+        assertEquals(0, result.getExitCode());
+        assertTrue(output().contains("it's \"quoted\" $HOME\n"), output());
+        assertTrue(output().endsWith("no newline\n"), output());
+        // -x traces the commands
+        assertTrue(output().contains("+ echo"), output());
+    }
+
+    @Test
+    void testWorkspaceIsCurrentDirectory() throws Exception {
+        Files.write(new File(workspace, "ready").toPath(), new byte[0]);
+        assertEquals(0, run("test -f ready", Collections.<String, String>emptyMap()).getExitCode());
+    }
+
+    @Test
+    void testScriptsDoNotAffectEachOther() throws Exception {
+        final ShellWorker worker = ShellWorker.borrow(SHELL);
+        try {
+            assertEquals(0, worker.run(workspace, script("export LEFT_OVER=1\ncd /"), Collections.<String, String>emptyMap(), 0, output).getExitCode());
+            assertEquals(0, worker.run(workspace, script("test -z \"$LEFT_OVER\"\ntest \"$(pwd)\" != /"), Collections.<String, String>emptyMap(), 0, output).getExitCode());
+            assertTrue(worker.isAlive());
+        } finally {
+            worker.kill();
+        }
+    }
+
+    @Test
+    void testTimeoutKillsWorker() throws Exception {
+        final ShellWorker worker = ShellWorker.borrow(SHELL);
+        final long start = System.nanoTime();
+        final ShellWorker.Result result = worker.run(workspace, script("sleep 60"), Collections.<String, String>emptyMap(), 1, output);
+        assertTrue(result.isLost(), result.getExitCode() + " " + output());
+        assertTrue(result.isTimedOut());
+        assertTrue(System.nanoTime() - start < 30_000_000_000L);
+        worker.kill();
+    }
+
+    @Test
+    void testInterruptKillsWorker() throws Exception {
+        final ShellWorker worker = ShellWorker.borrow(SHELL);
+        final String script = script("echo started\nsleep 60");
+        final AtomicReference<Throwable> thrown = new AtomicReference<Throwable>();
+        final Thread waiting = new Thread(() -> {
+            try {
+                worker.run(workspace, script, Collections.<String, String>emptyMap(), 0, output);
+            } catch (Throwable t) {
+                thrown.set(t);
+            }
+        });
+        waiting.start();
+        // the output is copied while the script runs
+        final long deadline = System.nanoTime() + 30_000_000_000L;
+        while (!output().contains("started\n") && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        assertTrue(output().contains("started\n"), output());
+        waiting.interrupt();
+        waiting.join(30_000);
+        assertFalse(waiting.isAlive());
+        assertNotNull(thrown.get());
+        assertTrue(thrown.get() instanceof InterruptedException, thrown.get().toString());
+        while (worker.isAlive() && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        assertFalse(worker.isAlive());
+    }
+
+    @Test
+    void testWorkerIsReused() throws Exception {
+        final int idle = ShellWorker.countIdle(SHELL);
+        run("true", Collections.<String, String>emptyMap());
+        assertEquals(Math.min(idle + 1, ShellWorker.MAX_IDLE), ShellWorker.countIdle(SHELL));
+        run("true", Collections.<String, String>emptyMap());
+        assertEquals(Math.min(idle + 1, ShellWorker.MAX_IDLE), ShellWorker.countIdle(SHELL));
+    }
+
+    @Test
+    void testQuote() {
+        assertEquals("'a b'", ShellWorker.quote("a b"));
+        assertEquals("'it'\\''s'", ShellWorker.quote("it's"));
+    }
+
+    private ShellWorker.Result run(final String contents, final Map<String, String> env) throws Exception {
+        return new ShellWorker.Request(SHELL, script(contents), env, 0, output).invoke(workspace, null);
+    }
+
+    private String output() throws UnsupportedEncodingException {
+        return output.toString("UTF-8");
+    }
+
+    private String script(final String contents) throws Exception {
+        final File script = File.createTempFile("script", ".sh", scripts);
+        Files.write(script.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        return script.getAbsolutePath();
+    }
+
+}
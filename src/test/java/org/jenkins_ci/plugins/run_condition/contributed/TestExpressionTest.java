@@ -0,0 +1,163 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2012 by Chris Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.contributed;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestExpressionTest {
+
+    @TempDir
+    File workspace;
+
+    private final Map<String, String> env = new HashMap<String, String>();
+
+    @Test
+    void testStrings() throws Exception {
+        env.put("BRANCH", "main");
+        env.put("EMPTY", "");
+        assertTrue(evaluate("[ \"$BRANCH\" = \"main\" ]"));
+        assertTrue(evaluate("[ \"${BRANCH}\" = 'main' ]"));
+        assertTrue(evaluate("test $BRANCH != release"));
+        assertFalse(evaluate("[ \"$BRANCH\" = release ]"));
+        assertTrue(evaluate("[ -z \"$EMPTY\" ]"));
+        assertTrue(evaluate("[ -n \"$BRANCH\" ]"));
+        assertTrue(evaluate("[ \"$BRANCH\" ]"));
+        assertFalse(evaluate("[ \"$EMPTY\" ]"));
+        assertFalse(evaluate("[ ]"));
+        assertTrue(evaluate("[ \"x$BRANCH\" = xmain ]"));
+    }
+
+    @Test
+    void testIntegers() throws Exception {
+        env.put("BUILD_NUMBER", "42");
+        assertTrue(evaluate("[ \"$BUILD_NUMBER\" -gt 9 ]"));
+        assertTrue(evaluate("[ \"$BUILD_NUMBER\" -le 42 ]"));
+        assertFalse(evaluate("[ \"$BUILD_NUMBER\" -lt 42 ]"));
+        assertTrue(evaluate("test -1 -lt 0"));
+        // the shell reports an error, so leave it to the shell
+        assertNull(parse("[ abc -eq 1 ]"));
+    }
+
+    @Test
+    void testFiles() throws Exception {
+        Files.createDirectories(new File(workspace, "build").toPath());
+        Files.write(new File(workspace, "build/ready").toPath(), new byte[] {1});
+        Files.write(new File(workspace, "empty").toPath(), new byte[0]);
+        assertTrue(evaluate("test -f build/ready"));
+        assertTrue(evaluate("[ -d build ]"));
+        assertTrue(evaluate("[ -e build/ready ]"));
+        assertFalse(evaluate("[ -f build ]"));
+        assertFalse(evaluate("[ -e missing ]"));
+        assertTrue(evaluate("[ -s build/ready ]"));
+        assertFalse(evaluate("[ -s empty ]"));
+        assertTrue(evaluate("[ -f " + new File(workspace, "empty").getAbsolutePath() + " ]"));
+        assertTrue(parse("[ -f x ]").needsFiles());
+        assertFalse(parse("[ x = x ]").needsFiles());
+    }
+
+    @Test
+    void testNegationAndLists() throws Exception {
+        assertTrue(evaluate("[ ! -f missing ]"));
+        assertTrue(evaluate("! test -f missing"));
+        assertTrue(evaluate("[ a = a ] && [ b = b ]"));
+        assertFalse(evaluate("[ a = a ] && [ b = c ]"));
+        assertTrue(evaluate("[ a = b ] || [ b = b ]"));
+        assertTrue(evaluate("false || true && [ a = a ]"));
+        assertFalse(evaluate("true || false && false"));
+        assertTrue(evaluate("[ ! a = b ]"));
+        assertTrue(evaluate("[ '(' a ')' ]"));
+    }
+
+    @Test
+    void testCommentsAndBlankLines() throws Exception {
+        assertTrue(evaluate("\n# check that it was built\n\n[ a = a ] # same\n"));
+        assertNull(parse("[ a = a ]\n[ b = b ]"));
+        assertNull(parse("# nothing to do\n"));
+    }
+
+    @Test
+    void testLeftToTheShell() throws Exception {
+        env.put("SPACES", "a b");
+        env.put("GLOB", "*.txt");
+        assertNull(parse("#!/bin/bash\n[ a = a ]"));
+        assertNull(parse("ls"));
+        assertNull(parse("[ -f *.txt ]"));
+        assertNull(parse("[ $SPACES = a ]"));
+        assertNull(parse("[ $GLOB = a ]"));
+        assertNull(parse("[ $UNSET = a ]"));
+        assertNull(parse("[ -z \"$UNSET\" ]"));
+        assertNull(parse("[ \"$(cat file)\" = a ]"));
+        assertNull(parse("[ \"`cat file`\" = a ]"));
+        assertNull(parse("[ \"${A:-b}\" = b ]"));
+        assertNull(parse("[ a = a ]; echo"));
+        assertNull(parse("[ a = a ] > out"));
+        assertNull(parse("[ a = a ] | cat"));
+        assertNull(parse("[ a = a ] &"));
+        assertNull(parse("[ a == a ]"));
+        assertNull(parse("[ a = a -a b = b ]"));
+        assertNull(parse("[[ a = a ]]"));
+        assertNull(parse("[ -t 1 ]"));
+        assertNull(parse("[ 'unterminated = a ]"));
+        assertNull(parse("[ a = a"));
+        assertNotNull(parse("[ a = a ]"));
+    }
+
+    @Test
+    void testShellVariablesAreLeftToTheShell() {
+        // the build environment may have them, but the shell can give them other values
+        env.put("PWD", "/var/lib/jenkins");
+        env.put("HOME", "/var/lib/jenkins");
+        env.put("SHELL", "/bin/bash");
+        env.put("RANDOM", "4");
+        assertNull(parse("[ \"$PWD\" = /var/lib/jenkins ]"));
+        assertNull(parse("[ -d \"${HOME}/.m2\" ]"));
+        assertNull(parse("[ $SHELL = /bin/bash ]"));
+        assertNull(parse("[ \"$RANDOM\" -lt 16384 ]"));
+        assertNull(parse("[ \"$$\" -gt 0 ]"));
+        assertNull(parse("[ \"$?\" -eq 0 ]"));
+    }
+
+    private TestExpression parse(final String script) {
+        return TestExpression.parse(script, env);
+    }
+
+    private boolean evaluate(final String script) {
+        final TestExpression expression = parse(script);
+        assertNotNull(expression, script);
+        return expression.evaluate(workspace);
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.jenkins_ci.plugins.run_condition.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class BlackoutConditionTest {
+
+    @TempDir
+    Path home;
+
+    @TempDir
+    Path outside;
+
+    @Test
+    void testResolveInHome() throws Exception {
+        final Path calendar = write(home.resolve("calendars"), "freeze.ics");
+        assertEquals(calendar.toRealPath(), BlackoutCondition.resolve(home, "calendars/freeze.ics"));
+        assertEquals(calendar.toRealPath(), BlackoutCondition.resolve(home, "calendars/../calendars/freeze.ics"));
+    }
+
+    @Test
+    void testResolveOutsideHome() throws Exception {
+        write(outside, "freeze.csv");
+        assertThrows(IOException.class, () -> BlackoutCondition.resolve(home, outside.resolve("freeze.csv").toString()));
+        assertThrows(IOException.class, () -> BlackoutCondition.resolve(home, "../freeze.csv"));
+    }
+
+    @Test
+    void testResolveOtherFile() throws Exception {
+        write(home, "credentials.xml");
+        assertThrows(IOException.class, () -> BlackoutCondition.resolve(home, "credentials.xml"));
+    }
+
+    @Test
+    void testLinkOutsideHome() throws Exception {
+        final Path secret = write(outside, "freeze.ics");
+        assumeTrue(link(home.resolve("freeze.ics"), secret));
+        assertThrows(IOException.class, () -> BlackoutCondition.resolve(home, "freeze.ics"));
+        assumeTrue(link(home.resolve("outside"), outside));
+        assertThrows(IOException.class, () -> BlackoutCondition.resolve(home, "outside/freeze.ics"));
+    }
+
+    @Test
+    void testLinkToOtherFile() throws Exception {
+        final Path credentials = write(home, "credentials.xml");
+        assumeTrue(link(home.resolve("freeze.csv"), credentials));
+        assertThrows(IOException.class, () -> BlackoutCondition.resolve(home, "freeze.csv"));
+    }
+
+    private static Path write(final Path dir, final String name) throws IOException {
+        Files.createDirectories(dir);
+        return Files.write(dir.resolve(name), "2024-12-23,2025-01-02\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testBuildStableWithBuildTime() {
+        assertTrue(new BlackoutCondition("freeze.ics", true).isBuildStable());
+        assertFalse(new BlackoutCondition("freeze.ics", false).isBuildStable());
+    }
+
+    /**
+     * @return false if the file system can not make the link
+     */
+    private static boolean link(final Path link, final Path target) {
+        try {
+            Files.createSymbolicLink(link, target);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,199 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package org.jenkins_ci.plugins.run_condition.core;
+
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import org.easymock.EasyMock;
+import org.easymock.IMocksControl;
+import org.junit.jupiter.api.AfterEach;
+
+import org.jenkins_ci.plugins.run_condition.RunCondition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.easymock.EasyMock.expect;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CronConditionTest {
+
+    private static final String OFFICE_HOURS = "* 9-17 * * 1-5";
+    private final Calendar buildTime = Calendar.getInstance();
+    private final Calendar currentTime = Calendar.getInstance();
+    private final IMocksControl mockControl = EasyMock.createNiceControl();
+    private final BuildListener listener = mockControl.createMock(BuildListener.class);
+    private final ByteArrayOutputStream log = new ByteArrayOutputStream();
+    private final PrintStream logger = new PrintStream(log);
+
+    @BeforeEach
+    void setUp() {
+        // Monday
+        setTime(buildTime, 2024, Calendar.JUNE, 3, 3, 0);
+        setTime(currentTime, 2024, Calendar.JUNE, 3, 3, 0);
+        expect(listener.getLogger()).andReturn(logger).anyTimes();
+        mockControl.replay();
+    }
+
+    @AfterEach
+    void tearDown() {
+        logger.close();
+    }
+
+    @Test
+    void testMatchesCurrentTime() throws Exception {
+        final CronCondition condition = new CronConditionForTest(OFFICE_HOURS, false);
+        setTime(currentTime, 2024, Calendar.JUNE, 3, 9, 0);
+        assertCondition(condition, true, true);
+        setTime(currentTime, 2024, Calendar.JUNE, 3, 17, 59);
+        assertCondition(condition, true, true);
+        setTime(currentTime, 2024, Calendar.JUNE, 3, 18, 0);
+        assertCondition(condition, true, false);
+        setTime(currentTime, 2024, Calendar.JUNE, 3, 8, 59);
+        assertCondition(condition, true, false);
+        // Saturday
+        setTime(currentTime, 2024, Calendar.JUNE, 8, 12, 0);
+        assertCondition(condition, true, false);
+    }
+
+    @Test
+    void testMatchesBuildTime() throws Exception {
+        final CronCondition condition = new CronConditionForTest(OFFICE_HOURS, true);
+        setTime(currentTime, 2024, Calendar.JUNE, 3, 12, 0);
+        assertCondition(condition, false, false);
+        setTime(buildTime, 2024, Calendar.JUNE, 3, 12, 0);
+        assertCondition(condition, true, true);
+    }
+
+    @Test
+    void testResultKeptForTheMinute() throws Exception {
+        final CronCondition condition = new CronConditionForTest("30 12 * * *", false);
+        setTime(currentTime, 2024, Calendar.JUNE, 3, 12, 30);
+        assertCondition(condition, true, true);
+        currentTime.add(Calendar.SECOND, 59);
+        assertCondition(condition, true, true);
+        currentTime.add(Calendar.SECOND, 1);
+        assertCondition(condition, true, false);
+        currentTime.add(Calendar.MINUTE, -1);
+        assertCondition(condition, true, true);
+    }
+
+    @Test
+    void testMultipleLines() throws Exception {
+        final CronCondition condition = new CronConditionForTest("0 8 * * *\n0 20 * * *", false);
+        setTime(currentTime, 2024, Calendar.JUNE, 3, 8, 0);
+        assertCondition(condition, true, true);
+        setTime(currentTime, 2024, Calendar.JUNE, 3, 20, 0);
+        assertCondition(condition, true, true);
+        setTime(currentTime, 2024, Calendar.JUNE, 3, 14, 0);
+        assertCondition(condition, true, false);
+    }
+
+    @Test
+    void testTimeZone() throws Exception {
+        currentTime.setTimeZone(TimeZone.getTimeZone("UTC"));
+        setTime(currentTime, 2024, Calendar.JUNE, 3, 8, 30);
+        final CronCondition condition = new CronConditionForTest(OFFICE_HOURS, false);
+        condition.setTimeZone("UTC");
+        assertCondition(condition, true, false);
+        // 10:30 in Berlin, within the same minute as the result that was kept for UTC
+        condition.setTimeZone("Europe/Berlin");
+        assertCondition(condition, true, true);
+    }
+
+    @Test
+    void testLogsTimeInTimeZone() throws Exception {
+        currentTime.setTimeZone(TimeZone.getTimeZone("UTC"));
+        setTime(currentTime, 2024, Calendar.JUNE, 3, 8, 5);
+        final CronCondition condition = new CronConditionForTest(OFFICE_HOURS, false);
+        condition.setTimeZone("UTC");
+        condition.runPerform(null, listener);
+        condition.runPerform(null, listener);
+        logger.flush();
+        final String expected = "Cron condition: checking [" + OFFICE_HOURS + "] at 2024-06-03 08:05" + System.lineSeparator();
+        assertEquals(expected + expected, log.toString());
+    }
+
+    @Test
+    void testInvalidTimeZone() {
+        final CronCondition condition = new CronConditionForTest(OFFICE_HOURS, false);
+        assertThrows(RuntimeException.class, () -> condition.setTimeZone("Europe/Nowhere"));
+    }
+
+    @Test
+    void testBuildStableWithBuildTime() {
+        assertTrue(new CronCondition(OFFICE_HOURS, true).isBuildStable());
+        assertFalse(new CronCondition(OFFICE_HOURS, false).isBuildStable());
+    }
+
+    @Test
+    void testInvalidSpec() {
+        assertThrows(RuntimeException.class, () -> new CronCondition("* 25 * * *", false));
+    }
+
+    @Test
+    void testEmptySpec() {
+        assertThrows(RuntimeException.class, () -> new CronCondition(null, false));
+        assertThrows(RuntimeException.class, () -> new CronCondition(" \n ", false));
+    }
+
+    private static void setTime(final Calendar calendar, final int year, final int month, final int day, final int hours,
+                                final int minutes) {
+        calendar.clear();
+        calendar.set(year, month, day, hours, minutes, 0);
+    }
+
+    private void assertCondition(final RunCondition condition, final boolean expectedPrebuild, final boolean expectedPerform)
+                                                                                                                        throws Exception {
+        assertEquals(expectedPrebuild, condition.runPrebuild(null, listener));
+        assertEquals(expectedPerform, condition.runPerform(null, listener));
+    }
+
+    private class CronConditionForTest extends CronCondition {
+
+        public CronConditionForTest(final String spec, final boolean useBuildTime) {
+            super(spec, useBuildTime);
+        }
+
+        @Override
+        protected long getNowMillis() {
+            return currentTime.getTimeInMillis();
+        }
+
+        @Override
+        protected long getTimestampMillis(final AbstractBuild<?, ?> build) {
+            return buildTime.getTimeInMillis();
+        }
+    }
+
+}
@@ -36,11 +36,15 @@ import org.junit.jupiter.api.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
 
 import static org.easymock.EasyMock.expect;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class DayConditionTest {
 
@@ -166,6 +170,141 @@ class DayConditionTest {
         assertCondition(condition, true, false);
     }
 
+    @Test
+    void testSelectDaysMissingDays() throws Exception {
+        final ArrayList<DayCondition.Day> days = new ArrayList<>();
+        days.add(new DayCondition.Day(Calendar.MONDAY, true));
+        final DayCondition condition = new DayConditionForTest(false, new DayCondition.SelectDays(days));
+        currentTime.set(Calendar.DAY_OF_WEEK, Calendar.MONDAY);
+        assertCondition(condition, true, true);
+        currentTime.set(Calendar.DAY_OF_WEEK, Calendar.TUESDAY);
+        assertCondition(condition, true, false);
+    }
+
+    @Test
+    void testSelectDaysOfMonth() {
+        final ArrayList<DayCondition.Day> days = DayCondition.SelectDays.SelectDaysDescriptor.getAllDays();
+        days.set(5, new DayCondition.Day(Calendar.SATURDAY, true));
+        final DayCondition.SelectDays firstSaturday = new DayCondition.SelectDays(days);
+        firstSaturday.setDaysOfMonth("1-7");
+        assertEquals(true, firstSaturday.isDaySelected(date(2024, Calendar.JUNE, 1)));
+        assertEquals(false, firstSaturday.isDaySelected(date(2024, Calendar.JUNE, 8)));
+        assertEquals(false, firstSaturday.isDaySelected(date(2024, Calendar.JUNE, 2)));
+        assertEquals(true, firstSaturday.isDaySelected(date(2024, Calendar.JULY, 6)));
+        final DayCondition.SelectDays lastDay = new DayCondition.SelectDays(allSelected());
+        lastDay.setDaysOfMonth("15, L");
+        assertEquals(true, lastDay.isDaySelected(date(2024, Calendar.FEBRUARY, 29)));
+        assertEquals(false, lastDay.isDaySelected(date(2024, Calendar.FEBRUARY, 28)));
+        assertEquals(true, lastDay.isDaySelected(date(2023, Calendar.FEBRUARY, 28)));
+        assertEquals(true, lastDay.isDaySelected(date(2024, Calendar.APRIL, 15)));
+        assertEquals(false, lastDay.isDaySelected(date(2024, Calendar.APRIL, 16)));
+    }
+
+    @Test
+    void testSelectWeeksOfYear() {
+        final DayCondition.SelectDays firstQuarter = new DayCondition.SelectDays(allSelected());
+        firstQuarter.setWeeksOfYear("1-13");
+        // Monday 1 January 2024 is in week 1, and Sunday 31 March 2024 is in week 13
+        assertEquals(true, firstQuarter.isDaySelected(date(2024, Calendar.JANUARY, 1)));
+        assertEquals(true, firstQuarter.isDaySelected(date(2024, Calendar.MARCH, 31)));
+        assertEquals(false, firstQuarter.isDaySelected(date(2024, Calendar.APRIL, 1)));
+        // Monday 30 December 2024 is in week 1 of 2025
+        assertEquals(true, firstQuarter.isDaySelected(date(2024, Calendar.DECEMBER, 30)));
+        assertEquals(false, firstQuarter.isDaySelected(date(2024, Calendar.DECEMBER, 29)));
+    }
+
+    @Test
+    void testSelectWeeksOfYearInOtherCalendarSystems() {
+        final DayCondition.SelectDays firstQuarter = new DayCondition.SelectDays(allSelected());
+        firstQuarter.setWeeksOfYear("1-13");
+        // the year of a Buddhist calendar is 2567 in 2024, whose 31 March is in week 14
+        final Calendar buddhist = Calendar.getInstance(TimeZone.getDefault(), new Locale("th", "TH"));
+        buddhist.setTimeInMillis(date(2024, Calendar.MARCH, 31).getTimeInMillis());
+        assertEquals(true, firstQuarter.isDaySelected(buddhist));
+        buddhist.setTimeInMillis(date(2024, Calendar.APRIL, 1).getTimeInMillis());
+        assertEquals(false, firstQuarter.isDaySelected(buddhist));
+        buddhist.setTimeInMillis(date(2024, Calendar.DECEMBER, 30).getTimeInMillis());
+        assertEquals(true, firstQuarter.isDaySelected(buddhist));
+        // 2567 is not a leap year
+        buddhist.setTimeInMillis(date(2024, Calendar.FEBRUARY, 29).getTimeInMillis());
+        assertEquals(true, firstQuarter.isDaySelected(buddhist));
+        // Reiwa 6
+        final Calendar japanese = Calendar.getInstance(TimeZone.getDefault(), new Locale("ja", "JP", "JP"));
+        japanese.setTimeInMillis(date(2024, Calendar.APRIL, 1).getTimeInMillis());
+        assertEquals(false, firstQuarter.isDaySelected(japanese));
+    }
+
+    @Test
+    void testInvalidDaysAndWeeks() {
+        final DayCondition.SelectDays select = new DayCondition.SelectDays(allSelected());
+        assertThrows(RuntimeException.class, () -> select.setDaysOfMonth("0-7"));
+        assertThrows(RuntimeException.class, () -> select.setDaysOfMonth("1-32"));
+        assertThrows(RuntimeException.class, () -> select.setDaysOfMonth("first"));
+        assertThrows(RuntimeException.class, () -> select.setWeeksOfYear("54"));
+        assertThrows(RuntimeException.class, () -> select.setWeeksOfYear("L"));
+        assertThrows(RuntimeException.class, () -> select.setWeeksOfYear("10-1"));
+        select.setDaysOfMonth(" ");
+        assertEquals(null, select.getDaysOfMonth());
+        assertEquals(true, select.isDaySelected(date(2024, Calendar.JUNE, 9)));
+    }
+
+    @Test
+    void testInvalidDaysAndWeeksAreIgnoredWhenLoaded() throws Exception {
+        final DayCondition.SelectDays select = new DayCondition.SelectDays(allSelected());
+        final Field daysOfMonth = DayCondition.SelectDays.class.getDeclaredField("daysOfMonth");
+        daysOfMonth.setAccessible(true);
+        daysOfMonth.set(select, "0-7");
+        final Field weeksOfYear = DayCondition.SelectDays.class.getDeclaredField("weeksOfYear");
+        weeksOfYear.setAccessible(true);
+        weeksOfYear.set(select, "54");
+        select.readResolve();
+        assertEquals(true, select.isDaySelected(date(2024, Calendar.JUNE, 9)));
+    }
+
+    @Test
+    void testTimeZone() throws Exception {
+        currentTime.setTimeZone(TimeZone.getTimeZone("UTC"));
+        currentTime.set(2024, Calendar.MAY, 31, 23, 30, 0);
+        final DayCondition utc = new DayConditionForTest(false, new DayCondition.Weekday());
+        utc.setTimeZone("UTC");
+        assertCondition(utc, true, true);
+        final DayCondition auckland = new DayConditionForTest(false, new DayCondition.Weekday());
+        auckland.setTimeZone("Pacific/Auckland");
+        assertCondition(auckland, true, false);
+        // the same conditions, half an hour later, after midnight in UTC
+        currentTime.add(Calendar.MINUTE, 30);
+        assertCondition(utc, true, false);
+        assertCondition(auckland, true, false);
+    }
+
+    @Test
+    void testDeprecatedCalendarHooks() throws Exception {
+        currentTime.set(2024, Calendar.JUNE, 3, 12, 0, 0);
+        buildTime.set(2024, Calendar.JUNE, 8, 12, 0, 0);
+        assertCondition(new LegacyDayConditionForTest(false), true, true);
+        assertCondition(new LegacyDayConditionForTest(true), false, false);
+    }
+
+    @Test
+    void testInvalidTimeZone() {
+        final DayCondition condition = new DayConditionForTest(false, new DayCondition.Weekday());
+        assertThrows(RuntimeException.class, () -> condition.setTimeZone("Europe/Nowhere"));
+    }
+
+    private static ArrayList<DayCondition.Day> allSelected() {
+        final ArrayList<DayCondition.Day> days = new ArrayList<>();
+        for (final DayCondition.Day day : DayCondition.SelectDays.SelectDaysDescriptor.getAllDays())
+            days.add(new DayCondition.Day(day.getDay(), true));
+        return days;
+    }
+
+    private static Calendar date(final int year, final int month, final int day) {
+        final Calendar date = Calendar.getInstance();
+        date.clear();
+        date.set(year, month, day, 12, 0);
+        return date;
+    }
+
     private void assertWeekday(final boolean expectedPrebuild, final boolean expectedPerform) throws Exception {
         assertCondition(new DayConditionForTest(false, new DayCondition.Weekday()), expectedPrebuild, expectedPerform);
     }
@@ -186,14 +325,35 @@ class DayConditionTest {
             super(useBuildTime, daySelector);
         }
 
+        @Override
+        protected long getNowMillis() {
+            return currentTime.getTimeInMillis();
+        }
+
+        @Override
+        protected long getTimestampMillis(final AbstractBuild<?, ?> build) {
+            return buildTime.getTimeInMillis();
+        }
+    }
+
+    /**
+     * Overrides the Calendar hooks that were there before the millisecond ones.
+     */
+    @SuppressWarnings("deprecation")
+    private class LegacyDayConditionForTest extends DayCondition {
+
+        public LegacyDayConditionForTest(final boolean useBuildTime) {
+            super(useBuildTime, new DayCondition.Weekday());
+        }
+
         @Override
         protected Calendar getNow() {
-            return currentTime;
+            return (Calendar) currentTime.clone();
         }
 
         @Override
         protected Calendar getTimestamp(final AbstractBuild<?, ?> build) {
-            return buildTime;
+            return (Calendar) buildTime.clone();
         }
     }
 
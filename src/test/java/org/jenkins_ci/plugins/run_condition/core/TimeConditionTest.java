@@ -171,6 +171,45 @@ class TimeConditionTest {
         assertBuild(createBuildTimeTimeCondition(), true);
     }
 
+    @Test
+    void testWindowCrossingMidnight() throws Exception {
+        final TimeCondition overnight = new TimeConditionForTest(22, 0, 4, 0, false);
+        setTimeOutsideRange(buildTime);
+        setTime(currentTime, 23, 30);
+        assertCurrent(overnight, true);
+        setTime(currentTime, 22, 0);
+        floor(currentTime);
+        assertCurrent(overnight, true);
+        currentTime.add(Calendar.SECOND, -1);
+        assertCurrent(overnight, false);
+        setTime(currentTime, 0, 0);
+        floor(currentTime);
+        assertCurrent(overnight, true);
+        setTime(currentTime, 4, 0);
+        ceiling(currentTime);
+        assertCurrent(overnight, true);
+        currentTime.add(Calendar.SECOND, 1);
+        assertCurrent(overnight, false);
+        setTime(currentTime, 12, 0);
+        assertCurrent(overnight, false);
+    }
+
+    @Test
+    void testDeprecatedCalendarHooks() throws Exception {
+        setTimeOutsideRange(buildTime);
+        setTime(currentTime, LOWER_HOURS, LOWER_MINUTES);
+        floor(currentTime);
+        assertCurrent(new LegacyTimeConditionForTest(false), true);
+        assertBuild(new LegacyTimeConditionForTest(true), false);
+    }
+
+    @Test
+    void testEarliestAndLatest() {
+        final TimeCondition condition = new TimeCondition("9:05", "18:30", false);
+        assertEquals("09:05", condition.getEarliest());
+        assertEquals("18:30", condition.getLatest());
+    }
+
     @Test
     void testTimeStringTest() {
         for (int hours = 0; hours < 24; hours++) {
@@ -243,14 +282,36 @@ class TimeConditionTest {
                     useBuildTime);
         }
 
+        @Override
+        protected long getNowMillis() {
+            return currentTime.getTimeInMillis();
+        }
+
+        @Override
+        protected long getTimestampMillis(final AbstractBuild<?, ?> build) {
+            return buildTime.getTimeInMillis();
+        }
+    }
+
+    /**
+     * Overrides the Calendar hooks that were there before the millisecond ones.
+     */
+    @SuppressWarnings("deprecation")
+    private class LegacyTimeConditionForTest extends TimeCondition {
+
+        public LegacyTimeConditionForTest(final boolean useBuildTime) {
+            super(String.format("%d:%02d", LOWER_HOURS, LOWER_MINUTES), String.format("%d:%02d", UPPER_HOURS, UPPER_MINUTES),
+                    useBuildTime);
+        }
+
         @Override
         protected Calendar getNow() {
-            return currentTime;
+            return (Calendar) currentTime.clone();
         }
 
         @Override
         protected Calendar getTimestamp(final AbstractBuild<?, ?> build) {
-            return buildTime;
+            return (Calendar) buildTime.clone();
         }
     }
 
@@ -0,0 +1,365 @@
+/*
+ * The MIT License
+ *
+ * Copyright (C) 2011 by Anthony Robinson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package org.jenkins_ci.plugins.run_condition.logic;
+
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.StreamBuildListener;
+import org.easymock.EasyMock;
+import org.jenkins_ci.plugins.run_condition.Messages;
+import org.jenkins_ci.plugins.run_condition.RunCondition;
+import org.jenkins_ci.plugins.run_condition.core.AlwaysRun;
+import org.jenkins_ci.plugins.run_condition.core.NeverRun;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConditionPlanTest {
+
+    private final BuildListener listener = EasyMock.createNiceMock(BuildListener.class);
+
+    @Test
+    void testAlwaysIsDroppedFromAnd() throws Exception {
+        final Counted counted = new Counted("a", true);
+        final ConditionPlan plan = ConditionPlan.compile(and(new AlwaysRun(), counted, new AlwaysRun()));
+        assertTrue(plan instanceof ConditionPlan.Leaf);
+        assertTrue(plan.runPerform(null, listener));
+        assertEquals(1, counted.evaluations);
+    }
+
+    @Test
+    void testNeverDecidesAnd() throws Exception {
+        final Counted counted = new Counted("a", true);
+        final ConditionPlan plan = ConditionPlan.compile(and(counted, new NeverRun()));
+        assertFalse(plan.runPrebuild(null, listener));
+        assertFalse(plan.runPerform(null, listener));
+        assertEquals(0, counted.evaluations);
+    }
+
+    @Test
+    void testAlwaysDecidesOr() throws Exception {
+        final Counted counted = new Counted("a", false);
+        final ConditionPlan plan = ConditionPlan.compile(or(new NeverRun(), counted, new AlwaysRun()));
+        assertTrue(plan.runPerform(null, listener));
+        assertEquals(0, counted.evaluations);
+    }
+
+    @Test
+    void testEmptyAndOr() throws Exception {
+        assertTrue(ConditionPlan.compile(and()).runPerform(null, listener));
+        assertFalse(ConditionPlan.compile(or()).runPerform(null, listener));
+    }
+
+    @Test
+    void testDoubleNegationIsRemoved() throws Exception {
+        final Counted counted = new Counted("a", true);
+        final ConditionPlan plan = ConditionPlan.compile(new Not(new Not(counted)));
+        assertTrue(plan instanceof ConditionPlan.Leaf);
+        assertSame(counted, ((ConditionPlan.Leaf) plan).getCondition());
+        assertFalse(ConditionPlan.compile(new Not(new Not(new Not(counted)))).runPerform(null, listener));
+        assertFalse(ConditionPlan.compile(new Not(new AlwaysRun())).runPerform(null, listener));
+    }
+
+    @Test
+    void testNestedAndIsMergedAndDuplicatesEvaluatedOnce() throws Exception {
+        final Counted a = new Counted("a", true);
+        final Counted b = new Counted("b", true);
+        final Counted sameAsA = new Counted("a", true);
+        final ConditionPlan plan = ConditionPlan.compile(and(a, and(b, sameAsA), new Not(new Not(a))));
+        assertTrue(plan.runPerform(null, listener));
+        assertEquals(1, a.evaluations);
+        assertEquals(1, b.evaluations);
+        assertEquals(0, sameAsA.evaluations);
+    }
+
+    @Test
+    void testOrInsideAndIsNotMerged() throws Exception {
+        final Counted a = new Counted("a", false);
+        final Counted b = new Counted("b", true);
+        final Counted c = new Counted("c", true);
+        final And and = and(or(a, b), c);
+        assertTrue(and.runPerform(null, listener));
+        assertFalse(and(or(a, new Counted("d", false)), c).runPerform(null, listener));
+    }
+
+    @Test
+    void testCheapestFirstEvaluatesCheaperConditionFirst() throws Exception {
+        // without a descriptor each condition gets the default cost, so the nested or costs three times as much
+        final Counted x = new Counted("x", false);
+        final Counted y = new Counted("y", false);
+        final Counted z = new Counted("z", true);
+        final Counted a = new Counted("a", false);
+        final And configuredOrder = and(or(x, y, z), a);
+        assertFalse(configuredOrder.runPerform(null, listener));
+        assertEquals(1, x.evaluations);
+        assertEquals(1, a.evaluations);
+
+        final And cheapestFirst = and(or(x, y, z), a);
+        cheapestFirst.setEvaluateCheapestFirst(true);
+        assertFalse(cheapestFirst.runPerform(null, listener));
+        assertEquals(1, x.evaluations);
+        assertEquals(2, a.evaluations);
+    }
+
+    @Test
+    void testCheapestFirstKeepsResult() throws Exception {
+        final Or or = or(and(new Counted("x", true), new Counted("y", false)), new Counted("a", false), new Not(new Counted("b", false)));
+        or.setEvaluateCheapestFirst(true);
+        assertTrue(or.runPerform(null, listener));
+        assertTrue(or.runPrebuild(null, listener));
+    }
+
+    @Test
+    void testCheapestFirstDoesNotMoveFileCheckBeforeShell(@TempDir final Path dir) throws Exception {
+        // And(Shell "touch out.txt", File exists out.txt) - the file check is cheaper, but it must see the file
+        final Path out = dir.resolve("out.txt");
+        final ConditionPlan touch = new Touch(out);
+        final ConditionPlan exists = new ConditionPlan.Leaf(new Exists(out), "1");
+        final ConditionPlan.Combination and = new ConditionPlan.Combination(true, true, false, new ConditionPlan[] {touch, exists});
+        assertArrayEquals(new ConditionPlan[] {touch, exists}, and.getEvaluationOrder());
+        assertTrue(and.runPerform(null, listener));
+    }
+
+    @Test
+    void testCheapestFirstSortsBetweenSideEffects(@TempDir final Path dir) {
+        final ConditionPlan a = ConditionPlan.compile(or(new Counted("x", true), new Counted("y", true)));
+        final ConditionPlan b = new ConditionPlan.Leaf(new Counted("b", true), "1");
+        final ConditionPlan touch = new Touch(dir.resolve("out.txt"));
+        final ConditionPlan c = ConditionPlan.compile(or(new Counted("z", true), new Counted("w", true)));
+        final ConditionPlan d = new ConditionPlan.Leaf(new Counted("d", true), "4");
+        final ConditionPlan.Combination and = new ConditionPlan.Combination(true, true, false, new ConditionPlan[] {a, b, touch, c, d});
+        assertArrayEquals(new ConditionPlan[] {b, a, touch, d, c}, and.getEvaluationOrder());
+    }
+
+    @Test
+    void testNestedAndIsNotMergedIntoCheapestFirstAnd() {
+        final And inner = and(new Counted("b", true), new Counted("c", true));
+        final And outer = and(new Counted("a", true), inner);
+        assertEquals(3, ((ConditionPlan.Combination) outer.getPlan()).getEvaluationOrder().length);
+        outer.setEvaluateCheapestFirst(true);
+        assertEquals(2, ((ConditionPlan.Combination) outer.getPlan()).getEvaluationOrder().length);
+    }
+
+    @Test
+    void testParallelLogIsInConfiguredOrder() throws Exception {
+        final ByteArrayOutputStream log = new ByteArrayOutputStream();
+        final BuildListener logListener = new StreamBuildListener(log, StandardCharsets.UTF_8);
+        final And and = and(new Slow("first", 200, true), new Slow("second", 0, true), new Slow("third", 100, true));
+        and.setEvaluateInParallel(true);
+        assertTrue(and.runPerform(null, logListener));
+        assertEquals(String.format("first%nsecond%nthird%n"), log.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testParallelStopsOnceDecided() throws Exception {
+        final Slow slow = new Slow("slow", 60000, true);
+        final Or or = or(slow, new Slow("fast", 0, true));
+        or.setEvaluateInParallel(true);
+        final long start = System.nanoTime();
+        assertTrue(or.runPrebuild(null, listener));
+        assertTrue(System.nanoTime() - start < 30000000000L);
+    }
+
+    @Test
+    void testParallelLogOfCancelledConditionIsKept() throws Exception {
+        final ByteArrayOutputStream log = new ByteArrayOutputStream();
+        final BuildListener logListener = new StreamBuildListener(log, StandardCharsets.UTF_8);
+        final Or or = or(and(new Slow("started", 0, true), new Slow("slow", 60000, true)), new Slow("fast", 200, true));
+        or.setEvaluateInParallel(true);
+        assertTrue(or.runPerform(null, logListener));
+        assertEquals(String.format("started%n%s%nfast%n", Messages.logic_parallel_cancelled(1)), log.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testParallelExceptionOnlyThrownIfUndecided() throws Exception {
+        final And decided = and(new Slow("fails", 0, null), new Slow("false", 0, false));
+        decided.setEvaluateInParallel(true);
+        assertFalse(decided.runPerform(null, listener));
+        final And undecided = and(new Slow("fails", 0, null), new Slow("true", 0, true));
+        undecided.setEvaluateInParallel(true);
+        assertThrows(IllegalStateException.class, () -> undecided.runPerform(null, listener));
+    }
+
+    @Test
+    void testParallelAndSequentialAreNotMerged() throws Exception {
+        final Counted a = new Counted("a", true);
+        final Counted b = new Counted("b", false);
+        final And parallel = and(a, b);
+        parallel.setEvaluateInParallel(true);
+        assertFalse(or(and(a, b), parallel).runPerform(null, listener));
+        assertEquals(2, a.evaluations);
+        assertEquals(2, b.evaluations);
+    }
+
+    @Test
+    void testPlanIsKeptByCondition() {
+        final And and = and(new Counted("a", true), new Counted("b", true));
+        assertSame(and.getPlan(), and.getPlan());
+    }
+
+    private static And and(final RunCondition... conditions) {
+        return new And(containers(conditions));
+    }
+
+    private static Or or(final RunCondition... conditions) {
+        return new Or(containers(conditions));
+    }
+
+    private static ArrayList<ConditionContainer> containers(final RunCondition... conditions) {
+        final ArrayList<ConditionContainer> containers = new ArrayList<>();
+        for (RunCondition condition : conditions)
+            containers.add(new ConditionContainer(condition));
+        return containers;
+    }
+
+    private static final class Counted extends RunCondition {
+
+        private final String name;
+        private final boolean result;
+        private transient int evaluations;
+
+        Counted(final String name, final boolean result) {
+            this.name = name;
+            this.result = result;
+        }
+
+        @Override
+        public boolean runPrebuild(final AbstractBuild<?, ?> build, final BuildListener listener) {
+            evaluations++;
+            return result;
+        }
+
+        @Override
+        public boolean runPerform(final AbstractBuild<?, ?> build, final BuildListener listener) {
+            evaluations++;
+            return result;
+        }
+
+    }
+
+    /**
+     * Logs its name after a delay, then returns the result - or throws if there is no result.
+     */
+    private static final class Slow extends RunCondition {
+
+        private final String name;
+        private final long millis;
+        private final Boolean result;
+
+        Slow(final String name, final long millis, final Boolean result) {
+            this.name = name;
+            this.millis = millis;
+            this.result = result;
+        }
+
+        @Override
+        public boolean runPrebuild(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
+            return runPerform(build, listener);
+        }
+
+        @Override
+        public boolean runPerform(final AbstractBuild<?, ?> build, final BuildListener listener) throws Exception {
+            Thread.sleep(millis);
+            listener.getLogger().println(name);
+            if (result == null) throw new IllegalStateException(name);
+            return result;
+        }
+
+    }
+
+    /**
+     * Creates a file, like a Shell condition running touch - so it is not side effect free, and costs more than anything.
+     */
+    private static final class Touch extends ConditionPlan {
+
+        private final Path file;
+
+        Touch(final Path file) {
+            this.file = file;
+        }
+
+        @Override
+        public boolean runPrebuild(final AbstractBuild<?, ?> build, final BuildListener listener) {
+            return true;
+        }
+
+        @Override
+        public boolean runPerform(final AbstractBuild<?, ?> build, final BuildListener listener) throws IOException {
+            Files.write(file, new byte[0]);
+            return true;
+        }
+
+        @Override
+        long getCost() {
+            return Long.MAX_VALUE / 2;
+        }
+
+        @Override
+        boolean isSideEffectFree() {
+            return false;
+        }
+
+        @Override
+        String createKey() {
+            return "touch " + file;
+        }
+
+    }
+
+    private static final class Exists extends RunCondition {
+
+        private final transient Path file;
+
+        Exists(final Path file) {
+            this.file = file;
+        }
+
+        @Override
+        public boolean runPrebuild(final AbstractBuild<?, ?> build, final BuildListener listener) {
+            return true;
+        }
+
+        @Override
+        public boolean runPerform(final AbstractBuild<?, ?> build, final BuildListener listener) {
+            return Files.exists(file);
+        }
+
+    }
+
+}